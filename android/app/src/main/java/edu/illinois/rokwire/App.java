@@ -0,0 +1,290 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import android.app.ActivityManager;
+import android.app.Application;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.flutter.embedding.engine.FlutterEngine;
+import io.flutter.embedding.engine.FlutterEngineCache;
+import io.flutter.embedding.engine.dart.DartExecutor;
+import io.flutter.plugin.common.BasicMessageChannel;
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+import io.flutter.plugin.common.StandardMessageCodec;
+import io.flutter.plugin.common.StandardMethodCodec;
+
+/**
+ * Starts the Flutter engine and the Dart entrypoint when the process starts for an activity, ahead of
+ * {@link MainActivity}. Processes started in the background, by a push message or a job for instance, would run the
+ * whole Dart services init headless for nothing; their engine is started by the first {@link MainActivity} instead.
+ * The engine is kept in {@link FlutterEngineCache} under {@link #FLUTTER_ENGINE_ID}, so activity recreation and
+ * notification launches attach to the running engine instead of booting a new one.
+ * <p>
+ * The native channels live as long as the engine. Calls are dispatched by {@link NativeHandlerRegistry}: process wide
+ * methods are registered for this application, the ones that need an activity for {@link MainActivity} while attached.
+ * Calls to methods without a handler are held until an activity attaches. The methods and their threading policies
+ * are listed in {@link AppNativeHandlers}.
+ */
+public class App extends Application implements MethodChannel.MethodCallHandler, AppNativeHandlers.Host {
+
+    private static final String TAG = "App";
+
+    static final String FLUTTER_ENGINE_ID = "edu.illinois.rokwire/engine";
+    static final String NATIVE_CHANNEL = "edu.illinois.rokwire/native_call";
+    static final String NATIVE_BACKGROUND_CHANNEL = "edu.illinois.rokwire/native_call_background";
+    static final String LAUNCH_STATUS_CHANNEL = "edu.illinois.rokwire/launch_status";
+
+    private static final long BARCODE_CACHE_MAX_BYTES = 2 * 1024 * 1024;
+    private static final long BARCODE_CACHE_MAX_DISK_BYTES = 4 * 1024 * 1024;
+    private static final String BARCODE_CACHE_DIR = "barcodes";
+
+    private static final String CHANNEL_RECORDING_FILE_NAME = "channel_recording.bin";
+
+    private boolean flutterEngineWarmedUp;
+    private FlutterEngine flutterEngine;
+    private PluginLoader pluginLoader;
+    private final ChannelMetrics channelMetrics = new ChannelMetrics();
+    private final ChannelRecorder channelRecorder = new ChannelRecorder();
+    private final JankWatchdog jankWatchdog = JankWatchdog.getInstance();
+    private BarcodeRenderer barcodeRenderer;
+    private BarcodeDecoder barcodeDecoder;
+    private String launchStatus;
+    private LaunchStatusOverlay launchStatusOverlay;
+    private NativeHandlerRegistry nativeHandlers;
+    private MainActivity activity;
+    private final List<PendingCall> pendingCalls = new ArrayList<>();
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Release builds install it when enabled over the native channel.
+        if (BuildConfig.DEBUG) {
+            jankWatchdog.install();
+        }
+        nativeHandlers = AppNativeHandlers.createRegistry();
+        // Recordings hold config and barcode contents in clear, release builds do not record.
+        AppNativeHandlers.register(nativeHandlers, this, BuildConfig.DEBUG);
+        if (isForegroundStart()) {
+            warmUpFlutterEngine();
+        }
+    }
+
+    /**
+     * The process of a launcher or notification start runs a top activity, broadcast receivers and services do not
+     * make it foreground.
+     */
+    private static boolean isForegroundStart() {
+        ActivityManager.RunningAppProcessInfo processInfo = new ActivityManager.RunningAppProcessInfo();
+        ActivityManager.getMyMemoryState(processInfo);
+        return (processInfo.importance == ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND);
+    }
+
+    /**
+     * Starts the cached engine, unless it was already started or failed to start.
+     */
+    void warmUpFlutterEngine() {
+        if (flutterEngineWarmedUp) {
+            return;
+        }
+        flutterEngineWarmedUp = true;
+        try {
+            PluginLoader.Engine engine = new PluginLoader.Engine(this);
+            flutterEngine = engine;
+            pluginLoader = new PluginLoader(engine);
+            pluginLoader.attachStartupPlugins();
+            attachNativeChannel(flutterEngine);
+            flutterEngine.getDartExecutor().executeDartEntrypoint(DartExecutor.DartEntrypoint.createDefault());
+            FlutterEngineCache.getInstance().put(FLUTTER_ENGINE_ID, flutterEngine);
+        } catch (RuntimeException exception) {
+            // MainActivity falls back to an engine of its own.
+            Log.e(TAG, "Failed to warm up Flutter engine", exception);
+            flutterEngine = null;
+            pluginLoader = null;
+        }
+    }
+
+    /**
+     * @return the loader of the cached engine plugins, null if the engine warm up failed.
+     */
+    PluginLoader getPluginLoader() {
+        return pluginLoader;
+    }
+
+    boolean isCachedEngine(FlutterEngine engine) {
+        return (engine != null) && (engine == flutterEngine);
+    }
+
+    /**
+     * Creates the native channels on the engine: the main thread one, with this application as handler, and the
+     * background one for calls that are expensive to decode or handle.
+     */
+    void attachNativeChannel(FlutterEngine engine) {
+        BinaryMessenger messenger = engine.getDartExecutor().getBinaryMessenger();
+        MethodChannel channel = new MethodChannel(messenger, NATIVE_CHANNEL);
+        channel.setMethodCallHandler(channelMetrics.intercept(channelRecorder.intercept(ChannelRecording.CHANNEL_MAIN, this)));
+
+        // Arguments are decoded and handlers run on the task queue thread, replies are still sent from the main thread.
+        MethodChannel backgroundChannel = new MethodChannel(messenger, NATIVE_BACKGROUND_CHANNEL, StandardMethodCodec.INSTANCE,
+                messenger.makeBackgroundTaskQueue());
+        backgroundChannel.setMethodCallHandler(channelMetrics.intercept(channelRecorder.intercept(ChannelRecording.CHANNEL_BACKGROUND,
+                this::onBackgroundMethodCall)));
+
+        // Fire and forget launch status updates, Dart does not wait for a reply between them.
+        BasicMessageChannel<Object> launchStatusChannel = new BasicMessageChannel<>(messenger, LAUNCH_STATUS_CHANNEL, StandardMessageCodec.INSTANCE);
+        launchStatusChannel.setMessageHandler((message, reply) -> {
+            long startTime = jankWatchdog.beginOperation();
+            setLaunchStatus((message instanceof String) ? (String) message : null);
+            reply.reply(null);
+            jankWatchdog.endOperation(JankWatchdog.OPERATION_LAUNCH_STATUS, null, startTime);
+        });
+    }
+
+    /**
+     * Shows the launch status in the activity overlay, or keeps it until an overlay attaches.
+     */
+    @Override
+    public void setLaunchStatus(String status) {
+        launchStatus = status;
+        if (launchStatusOverlay != null) {
+            launchStatusOverlay.setStatus(status);
+        }
+    }
+
+    void attachLaunchStatusOverlay(@NonNull LaunchStatusOverlay overlay) {
+        launchStatusOverlay = overlay;
+        if (launchStatus != null) {
+            overlay.setStatus(launchStatus);
+        }
+    }
+
+    void detachLaunchStatusOverlay(@NonNull LaunchStatusOverlay overlay) {
+        if (launchStatusOverlay == overlay) {
+            launchStatusOverlay = null;
+        }
+    }
+
+    /**
+     * Barcodes are rendered by the process, not the activity: replies must reach the engine, which outlives activities.
+     */
+    @Override
+    public synchronized BarcodeRenderer getBarcodeRenderer() {
+        if (barcodeRenderer == null) {
+            barcodeRenderer = new BarcodeRenderer(new BarcodeCache(BARCODE_CACHE_MAX_BYTES,
+                    new File(getCacheDir(), BARCODE_CACHE_DIR), BARCODE_CACHE_MAX_DISK_BYTES));
+        }
+        return barcodeRenderer;
+    }
+
+    synchronized BarcodeDecoder getBarcodeDecoder() {
+        if (barcodeDecoder == null) {
+            barcodeDecoder = new BarcodeDecoder();
+        }
+        return barcodeDecoder;
+    }
+
+    @Override
+    public void decodeBarcodes(Object params, @NonNull MethodChannel.Result result) {
+        getBarcodeDecoder().decode(params, result);
+    }
+
+    @Override
+    public String getDeepLinkScheme() {
+        return getString(R.string.app_scheme);
+    }
+
+    @Override
+    public ChannelRecorder getChannelRecorder() {
+        return channelRecorder;
+    }
+
+    @Override
+    public File getChannelRecordingFile() {
+        return new File(getFilesDir(), CHANNEL_RECORDING_FILE_NAME);
+    }
+
+    ChannelMetrics getChannelMetrics() {
+        return channelMetrics;
+    }
+
+    /**
+     * Registers the handlers of activity. Calls received while no activity was attached are delivered now.
+     */
+    void attachActivity(@NonNull MainActivity activity) {
+        this.activity = activity;
+        AppNativeHandlers.registerActivity(nativeHandlers, activity);
+        if (!pendingCalls.isEmpty()) {
+            List<PendingCall> calls = new ArrayList<>(pendingCalls);
+            pendingCalls.clear();
+            for (PendingCall pendingCall : calls) {
+                if (!nativeHandlers.dispatch(pendingCall.methodCall, pendingCall.result)) {
+                    pendingCall.result.notImplemented();
+                }
+            }
+        }
+    }
+
+    /**
+     * Unregisters the handlers of activity, unless another activity attached since.
+     */
+    void detachActivity(@NonNull MainActivity activity) {
+        if (this.activity == activity) {
+            AppNativeHandlers.unregisterActivity(nativeHandlers);
+            this.activity = null;
+        }
+    }
+
+    @Override
+    public void onMethodCall(@NonNull MethodCall methodCall, @NonNull MethodChannel.Result result) {
+        // Handlers may reply from any thread, the wrapper delivers the reply once on the main thread.
+        AsyncResult asyncResult = AsyncResult.of(result, methodCall.method);
+        long startTime = jankWatchdog.beginOperation();
+        if (!nativeHandlers.dispatch(methodCall, asyncResult)) {
+            if (activity != null) {
+                asyncResult.notImplemented();
+            } else {
+                pendingCalls.add(new PendingCall(methodCall, asyncResult));
+            }
+        }
+        jankWatchdog.endOperation(JankWatchdog.OPERATION_CHANNEL, methodCall.method, startTime);
+    }
+
+    private void onBackgroundMethodCall(@NonNull MethodCall methodCall, @NonNull MethodChannel.Result result) {
+        AsyncResult asyncResult = AsyncResult.of(result, methodCall.method);
+        if (!nativeHandlers.dispatch(methodCall, asyncResult)) {
+            asyncResult.notImplemented();
+        }
+    }
+
+    private static class PendingCall {
+        final MethodCall methodCall;
+        final MethodChannel.Result result;
+
+        PendingCall(MethodCall methodCall, MethodChannel.Result result) {
+            this.methodCall = methodCall;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * The native channel methods, their threading policies and the pools behind them. {@link App} and the channel replay
+ * on the host JVM both build their {@link NativeHandlerRegistry} here, so replays measure the handlers the app runs.
+ */
+class AppNativeHandlers {
+
+    private static final int MAX_HANDLER_QUEUE_DEPTH = 32;
+    private static final long HANDLER_KEEP_ALIVE_SECONDS = 30;
+
+    // Methods registered by registerActivity.
+    private static final String[] ACTIVITY_METHODS = {
+            Constants.APP_DISMISS_LAUNCH_SCREEN_KEY,
+            Constants.APP_ENABLED_ORIENTATIONS_KEY,
+            Constants.METRICS_KEY,
+            Constants.TEST_KEY,
+    };
+
+    /**
+     * The process wide side of the handlers.
+     */
+    interface Host {
+        void setLaunchStatus(String status);
+
+        BarcodeRenderer getBarcodeRenderer();
+
+        void decodeBarcodes(Object params, @NonNull MethodChannel.Result result);
+
+        ChannelRecorder getChannelRecorder();
+
+        File getChannelRecordingFile();
+
+        String getDeepLinkScheme();
+    }
+
+    /**
+     * The activity side of the handlers, registered while an activity is attached.
+     */
+    interface ActivityHost {
+        List<String> handleEnabledOrientations(Object orientations);
+
+        Map<String, Object> handleMetrics(Object params);
+    }
+
+    static NativeHandlerRegistry createRegistry() {
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        ThreadPoolExecutor serialExecutor = new ThreadPoolExecutor(1, 1, HANDLER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(MAX_HANDLER_QUEUE_DEPTH), new BackgroundThreadFactory("native-serial-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        serialExecutor.allowCoreThreadTimeOut(true);
+        // Calls already on the main thread run right away, without a thread hop.
+        return new NativeHandlerRegistry(runnable -> {
+            if (isMainThread()) {
+                runnable.run();
+            } else {
+                mainHandler.post(runnable);
+            }
+        }, serialExecutor);
+    }
+
+    /**
+     * @param channelRecording whether to register "channelRecording", recordings hold config and barcode contents in
+     *                         clear.
+     */
+    static void register(@NonNull NativeHandlerRegistry registry, @NonNull Host host, boolean channelRecording) {
+        // Large configs take a while to copy and compare, "init" calls are applied in order off the main thread.
+        registry.register(Constants.APP_INIT_KEY, NativeHandler.Policy.SERIAL, (methodCall, result) ->
+                result.success(ConfigStore.getInstance().applyInit(methodCall.arguments)));
+        registry.register(Constants.APP_SET_LAUNCH_SCREEN_STATUS_KEY, NativeHandler.Policy.MAIN, (methodCall, result) -> {
+            host.setLaunchStatus(Utils.Map.getValueFromPath(methodCall.arguments, "status", null));
+            result.success(true);
+        });
+        // A string resource, answered without an activity and without a thread hop.
+        registry.register(Constants.DEEPLINK_SCHEME_KEY, NativeHandler.Policy.CALLER, (methodCall, result) ->
+                result.success(host.getDeepLinkScheme()));
+        // Barcode work runs on the renderer and decoder pools, handing it over from the calling thread saves a thread hop.
+        registry.register(Constants.BARCODE_KEY, NativeHandler.Policy.CALLER, (methodCall, result) ->
+                host.getBarcodeRenderer().render(methodCall.arguments, result));
+        registry.register(Constants.BARCODE_BATCH_KEY, NativeHandler.Policy.CALLER, (methodCall, result) ->
+                host.getBarcodeRenderer().renderBatch(methodCall.arguments, result));
+        registry.register(Constants.DECODE_BARCODES_KEY, NativeHandler.Policy.CALLER, (methodCall, result) ->
+                host.decodeBarcodes(methodCall.arguments, result));
+        // "action": "start" records the native channel calls to a file replayable on the host JVM, "stop" ends it.
+        if (channelRecording) {
+            registry.register(Constants.CHANNEL_RECORDING_KEY, NativeHandler.Policy.SERIAL, (methodCall, result) -> {
+                String action = Utils.Map.getValueFromPath(methodCall.arguments, "action", null);
+                ChannelRecorder recorder = host.getChannelRecorder();
+                if ("start".equals(action)) {
+                    result.success(recorder.start(host.getChannelRecordingFile()));
+                } else if ("stop".equals(action)) {
+                    result.success(recorder.stop());
+                } else {
+                    result.success(recorder.getStatus());
+                }
+            });
+        }
+        // Stall reports are kept by the main thread. "enabled" installs or removes the watchdog before reporting.
+        registry.register(Constants.JANK_REPORTS_KEY, NativeHandler.Policy.MAIN, (methodCall, result) -> {
+            JankWatchdog jankWatchdog = JankWatchdog.getInstance();
+            Object enabled = (methodCall.arguments instanceof Map) ? ((Map<?, ?>) methodCall.arguments).get("enabled") : null;
+            if (Boolean.TRUE.equals(enabled)) {
+                jankWatchdog.install();
+            } else if (Boolean.FALSE.equals(enabled)) {
+                jankWatchdog.uninstall();
+            }
+            result.success(jankWatchdog.getReport(Utils.Map.getValueFromPath(methodCall.arguments, "reset", false)));
+        });
+    }
+
+    static void registerActivity(@NonNull NativeHandlerRegistry registry, @NonNull ActivityHost host) {
+        registry.register(Constants.APP_DISMISS_LAUNCH_SCREEN_KEY, NativeHandler.Policy.MAIN, (methodCall, result) ->
+                result.success(false));
+        registry.register(Constants.APP_ENABLED_ORIENTATIONS_KEY, NativeHandler.Policy.MAIN, (methodCall, result) ->
+                result.success(host.handleEnabledOrientations(methodCall.argument("orientations"))));
+        registry.register(Constants.METRICS_KEY, NativeHandler.Policy.MAIN, (methodCall, result) ->
+                result.success(host.handleMetrics(methodCall.arguments)));
+        registry.register(Constants.TEST_KEY, NativeHandler.Policy.MAIN, (methodCall, result) ->
+                result.success(false));
+    }
+
+    static void unregisterActivity(@NonNull NativeHandlerRegistry registry) {
+        for (String method : ACTIVITY_METHODS) {
+            registry.unregister(method);
+        }
+    }
+
+    private static boolean isMainThread() {
+        return (Looper.myLooper() == Looper.getMainLooper());
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * {@link MethodChannel.Result} that can be completed from any thread. The reply is delivered once, on the main
+ * looper; later replies are dropped and counted as duplicate, or as late if the call already timed out.
+ */
+public class AsyncResult implements MethodChannel.Result {
+
+    private static final String TAG = "AsyncResult";
+
+    public static final String TIMEOUT_ERROR_CODE = "timeout";
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private static final AtomicLong duplicateRepliesCount = new AtomicLong();
+    private static final AtomicLong lateRepliesCount = new AtomicLong();
+    private static final AtomicLong timeoutsCount = new AtomicLong();
+
+    private final MethodChannel.Result result;
+    private final String method;
+    private final AtomicBoolean completed = new AtomicBoolean();
+    private volatile boolean timedOut;
+    private Runnable timeoutRunnable;
+
+    private AsyncResult(@NonNull MethodChannel.Result result, String method) {
+        this.result = result;
+        this.method = method;
+    }
+
+    /**
+     * @return result itself if it already is an {@link AsyncResult}, a wrapper otherwise.
+     */
+    public static AsyncResult of(@NonNull MethodChannel.Result result, String method) {
+        return (result instanceof AsyncResult) ? (AsyncResult) result : new AsyncResult(result, method);
+    }
+
+    /**
+     * Replies with a {@link #TIMEOUT_ERROR_CODE} error if no reply came within timeoutMs.
+     */
+    public AsyncResult setTimeout(long timeoutMs) {
+        Runnable runnable = () -> {
+            if (completed.compareAndSet(false, true)) {
+                timedOut = true;
+                timeoutsCount.incrementAndGet();
+                Log.w(TAG, String.format("'%s' timed out after %d ms", method, timeoutMs));
+                deliver(method, () -> result.error(TIMEOUT_ERROR_CODE, String.format("'%s' timed out", method), null));
+            }
+        };
+        synchronized (this) {
+            if (timeoutRunnable != null) {
+                mainHandler.removeCallbacks(timeoutRunnable);
+            }
+            timeoutRunnable = runnable;
+        }
+        mainHandler.postDelayed(runnable, timeoutMs);
+        return this;
+    }
+
+    public boolean isCompleted() {
+        return completed.get();
+    }
+
+    @Override
+    public void success(Object value) {
+        if (complete()) {
+            deliver(method, () -> result.success(value));
+        }
+    }
+
+    @Override
+    public void error(String errorCode, String errorMessage, Object errorDetails) {
+        if (complete()) {
+            deliver(method, () -> result.error(errorCode, errorMessage, errorDetails));
+        }
+    }
+
+    @Override
+    public void notImplemented() {
+        if (complete()) {
+            deliver(method, result::notImplemented);
+        }
+    }
+
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("duplicate", duplicateRepliesCount.get());
+        stats.put("late", lateRepliesCount.get());
+        stats.put("timeouts", timeoutsCount.get());
+        return stats;
+    }
+
+    private boolean complete() {
+        if (completed.compareAndSet(false, true)) {
+            Runnable runnable;
+            synchronized (this) {
+                runnable = timeoutRunnable;
+                timeoutRunnable = null;
+            }
+            if (runnable != null) {
+                mainHandler.removeCallbacks(runnable);
+            }
+            return true;
+        }
+        if (timedOut) {
+            lateRepliesCount.incrementAndGet();
+            Log.w(TAG, String.format("Dropping late reply to '%s'", method));
+        } else {
+            duplicateRepliesCount.incrementAndGet();
+            Log.e(TAG, String.format("Dropping duplicate reply to '%s'", method));
+        }
+        return false;
+    }
+
+    private static void deliver(String method, Runnable reply) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            send(method, reply);
+        } else {
+            mainHandler.post(() -> send(method, reply));
+        }
+    }
+
+    private static void send(String method, Runnable reply) {
+        // Encoding a large reply takes a while on the main thread.
+        long startTime = JankWatchdog.getInstance().beginOperation();
+        try {
+            reply.run();
+        } catch (IllegalStateException exception) {
+            String errorMsg = String.format("Ignoring exception '%s'. See https://github.com/flutter/flutter/issues/29092 for details.", exception);
+            Log.e(TAG, errorMsg);
+        }
+        JankWatchdog.getInstance().endOperation(JankWatchdog.OPERATION_REPLY, method, startTime);
+    }
+}
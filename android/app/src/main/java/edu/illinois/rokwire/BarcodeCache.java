@@ -0,0 +1,250 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of encoded barcode PNG images, bounded by the total size of the cached bytes.
+ * Optionally mirrors the entries into a cache directory so they survive app restarts. Barcode contents are written
+ * there in clear, the directory is private to the app but not encrypted.
+ * All methods are thread safe.
+ */
+public class BarcodeCache {
+
+    private static final String TAG = "BarcodeCache";
+
+    private static final String DISK_FILE_EXTENSION = ".png";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+    // Writes take milliseconds, older temp files were left by a process killed while writing.
+    private static final long STALE_TEMP_FILE_AGE_MS = 60 * 1000;
+
+    private final LinkedHashMap<BarcodeRequest, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxBytes;
+    private long totalBytes;
+
+    private final File diskDir;
+    private final long maxDiskBytes;
+    private final Object diskLock = new Object();
+
+    private long hitCount;
+    private long diskHitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * @param maxBytes memory budget for cached images.
+     * @param diskDir directory to persist images in, or null for memory only cache.
+     * @param maxDiskBytes disk budget for persisted images.
+     */
+    BarcodeCache(long maxBytes, File diskDir, long maxDiskBytes) {
+        this.maxBytes = maxBytes;
+        this.diskDir = diskDir;
+        this.maxDiskBytes = maxDiskBytes;
+    }
+
+    /**
+     * Looks up the memory cache only, cheap enough to be called on the main thread.
+     */
+    synchronized byte[] getFromMemory(BarcodeRequest request) {
+        byte[] data = entries.get(request);
+        if (data != null) {
+            hitCount++;
+        }
+        return data;
+    }
+
+    /**
+     * Looks up the memory cache, then the disk cache. Should not be called on the main thread.
+     */
+    byte[] get(BarcodeRequest request) {
+        byte[] data = getFromMemory(request);
+        if (data == null) {
+            data = readFromDisk(request);
+            synchronized (this) {
+                if (data != null) {
+                    diskHitCount++;
+                    putInMemory(request, data);
+                } else {
+                    missCount++;
+                }
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Stores an image in memory and on disk. Should not be called on the main thread.
+     */
+    void put(BarcodeRequest request, byte[] data) {
+        if ((request == null) || (data == null)) {
+            return;
+        }
+        synchronized (this) {
+            putInMemory(request, data);
+        }
+        writeToDisk(request, data);
+    }
+
+    synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("bytes", totalBytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hitCount);
+        stats.put("diskHits", diskHitCount);
+        stats.put("misses", missCount);
+        stats.put("evictions", evictionCount);
+        return stats;
+    }
+
+    // Memory
+
+    private void putInMemory(BarcodeRequest request, byte[] data) {
+        if (data.length > maxBytes) {
+            return;
+        }
+        byte[] previousData = entries.put(request, data);
+        if (previousData != null) {
+            totalBytes -= previousData.length;
+        }
+        totalBytes += data.length;
+
+        Iterator<Map.Entry<BarcodeRequest, byte[]>> iterator = entries.entrySet().iterator();
+        while ((totalBytes > maxBytes) && iterator.hasNext()) {
+            Map.Entry<BarcodeRequest, byte[]> eldestEntry = iterator.next();
+            totalBytes -= eldestEntry.getValue().length;
+            iterator.remove();
+            evictionCount++;
+        }
+    }
+
+    // Disk
+
+    private byte[] readFromDisk(BarcodeRequest request) {
+        File file = getDiskFile(request);
+        if ((file == null) || !file.isFile()) {
+            return null;
+        }
+        byte[] data = new byte[(int) file.length()];
+        try (FileInputStream inputStream = new FileInputStream(file)) {
+            int offset = 0;
+            while (offset < data.length) {
+                int count = inputStream.read(data, offset, data.length - offset);
+                if (count < 0) {
+                    return null;
+                }
+                offset += count;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to read cached image: " + e);
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return data;
+    }
+
+    private void writeToDisk(BarcodeRequest request, byte[] data) {
+        File file = getDiskFile(request);
+        if ((file == null) || (data.length > maxDiskBytes) || (!diskDir.isDirectory() && !diskDir.mkdirs())) {
+            return;
+        }
+        // A temp file of its own, concurrent writers of the same request would otherwise write into one another.
+        File tempFile = null;
+        try {
+            tempFile = File.createTempFile(file.getName(), TEMP_FILE_EXTENSION, diskDir);
+            try (FileOutputStream outputStream = new FileOutputStream(tempFile)) {
+                outputStream.write(data);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write cached image: " + e);
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+            return;
+        }
+        if (tempFile.renameTo(file)) {
+            trimDisk();
+        } else {
+            tempFile.delete();
+        }
+    }
+
+    private void trimDisk() {
+        synchronized (diskLock) {
+            long staleTime = System.currentTimeMillis() - STALE_TEMP_FILE_AGE_MS;
+            File[] tempFiles = diskDir.listFiles((dir, name) -> name.endsWith(TEMP_FILE_EXTENSION));
+            if (tempFiles != null) {
+                for (File tempFile : tempFiles) {
+                    if (tempFile.lastModified() < staleTime) {
+                        tempFile.delete();
+                    }
+                }
+            }
+
+            File[] files = diskDir.listFiles((dir, name) -> name.endsWith(DISK_FILE_EXTENSION));
+            if (files == null) {
+                return;
+            }
+            long diskBytes = 0;
+            for (File file : files) {
+                diskBytes += file.length();
+            }
+            if (diskBytes > maxDiskBytes) {
+                Arrays.sort(files, (file1, file2) -> Long.compare(file1.lastModified(), file2.lastModified()));
+                for (int index = 0; (index < files.length) && (diskBytes > maxDiskBytes); index++) {
+                    long fileLength = files[index].length();
+                    if (files[index].delete()) {
+                        diskBytes -= fileLength;
+                    }
+                }
+            }
+        }
+    }
+
+    private File getDiskFile(BarcodeRequest request) {
+        if (diskDir == null) {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(request.cacheKey().getBytes(StandardCharsets.UTF_8));
+            StringBuilder fileName = new StringBuilder(hash.length * 2 + DISK_FILE_EXTENSION.length());
+            for (byte hashByte : hash) {
+                fileName.append(Character.forDigit((hashByte >> 4) & 0xF, 16));
+                fileName.append(Character.forDigit(hashByte & 0xF, 16));
+            }
+            fileName.append(DISK_FILE_EXTENSION);
+            return new File(diskDir, fileName.toString());
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.multi.GenericMultipleBarcodeReader;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * Finds the barcodes in images for the "decodeBarcodes" method call, images are decoded in parallel on a bounded pool
+ * of background threads. Each image is given as encoded bytes (PNG, JPEG, ...) or as a file path.
+ * <p>
+ * Images are downscaled while decoded so that their larger side fits in maxDimension, which is enough for codes that
+ * take a fair part of the picture. Images where nothing is found get a second, slower pass with TRY_HARDER over the
+ * same pixels, so no pass holds more than maxDimension squared pixels. Reported points are in the coordinates of the
+ * original image.
+ * <p>
+ * A call is queued whole or not at all: calls with more images than the queue has room for get a
+ * {@link NativeHandlerRegistry#BUSY_ERROR_CODE} error. Calls are bounded by their reply timeout, the pool lives as long
+ * as the process.
+ */
+public class BarcodeDecoder {
+
+    private static final String TAG = "BarcodeDecoder";
+
+    private static final int THREADS_COUNT = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final int MAX_IMAGES_COUNT = 16;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    private static final long DECODE_TIMEOUT_MS = 30000;
+
+    private static final int DEFAULT_MAX_DIMENSION = 1024;
+    private static final int MIN_MAX_DIMENSION = 256;
+    private static final int MAX_MAX_DIMENSION = 4096;
+
+    private final ThreadPoolExecutor executor;
+
+    BarcodeDecoder() {
+        executor = new ThreadPoolExecutor(THREADS_COUNT, THREADS_COUNT, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(2 * MAX_IMAGES_COUNT), new BackgroundThreadFactory("barcode-decode-"), new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Replies with a list in the images order. Each list entry is a map with either "barcodes" or "error" key, so a
+     * single unreadable image does not fail the whole call. A barcode is a map with "format", "text" and "points",
+     * the points being flattened x, y pairs.
+     */
+    void decode(Object params, @NonNull MethodChannel.Result methodResult) {
+        AsyncResult result = AsyncResult.of(methodResult, Constants.DECODE_BARCODES_KEY).setTimeout(DECODE_TIMEOUT_MS);
+        Object imagesObject = (params instanceof Map) ? ((Map<?, ?>) params).get("images") : null;
+        if (!(imagesObject instanceof List) || (((List<?>) imagesObject).size() > MAX_IMAGES_COUNT)) {
+            result.success(null);
+            return;
+        }
+        List<?> images = (List<?>) imagesObject;
+        if (images.isEmpty()) {
+            result.success(new ArrayList<>());
+            return;
+        }
+        Map<DecodeHintType, Object> hints = buildHints(params);
+        int maxDimension = Math.max(MIN_MAX_DIMENSION, Math.min(MAX_MAX_DIMENSION,
+                Utils.Map.getValueFromPath(params, "maxDimension", DEFAULT_MAX_DIMENSION)));
+
+        // Each image replies into its own slot, the last one to finish replies to the call. No thread waits for another.
+        Object[] imageResults = new Object[images.size()];
+        AtomicInteger remaining = new AtomicInteger(images.size());
+        // Only this method queues work, so the room checked here only grows until the images are queued.
+        synchronized (executor) {
+            if (executor.getQueue().remainingCapacity() < images.size()) {
+                Log.w(TAG, "Barcode decode queue is full, dropping request");
+                result.error(NativeHandlerRegistry.BUSY_ERROR_CODE, "Barcode decode queue is full", null);
+                return;
+            }
+            for (int index = 0; index < images.size(); index++) {
+                Object image = images.get(index);
+                int imageIndex = index;
+                executor.execute(() -> {
+                    imageResults[imageIndex] = decodeImageReply(image, hints, maxDimension);
+                    if (remaining.decrementAndGet() == 0) {
+                        result.success(toList(imageResults));
+                    }
+                });
+            }
+        }
+    }
+
+    private static Map<String, Object> decodeImageReply(Object image, Map<DecodeHintType, Object> hints, int maxDimension) {
+        Map<String, Object> imageResult = new HashMap<>();
+        try {
+            List<Map<String, Object>> barcodes = decodeImage(image, hints, maxDimension);
+            if (barcodes != null) {
+                imageResult.put("barcodes", barcodes);
+            } else {
+                imageResult.put("error", "Failed to read image");
+            }
+        } catch (Exception | OutOfMemoryError e) {
+            Log.e(TAG, "Failed to decode image: " + e);
+            imageResult.put("error", String.valueOf(e));
+        }
+        return imageResult;
+    }
+
+    /**
+     * @return the barcodes found in image, empty if none, or null if image could not be read.
+     */
+    private static List<Map<String, Object>> decodeImage(Object image, Map<DecodeHintType, Object> hints, int maxDimension) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decodeBitmap(image, options);
+        int width = options.outWidth;
+        int height = options.outHeight;
+        if ((width <= 0) || (height <= 0)) {
+            return null;
+        }
+        int sampleSize = 1;
+        while (Math.max(width, height) / sampleSize > maxDimension) {
+            sampleSize *= 2;
+        }
+
+        options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap bitmap = decodeBitmap(image, options);
+        if (bitmap == null) {
+            return null;
+        }
+        int bitmapWidth = bitmap.getWidth();
+        int bitmapHeight = bitmap.getHeight();
+        int[] pixels = new int[bitmapWidth * bitmapHeight];
+        bitmap.getPixels(pixels, 0, bitmapWidth, 0, 0, bitmapWidth, bitmapHeight);
+        bitmap.recycle();
+
+        // The binarized image is kept by the binary bitmap, the second pass reuses it.
+        BinaryBitmap binaryBitmap = new BinaryBitmap(new HybridBinarizer(new RGBLuminanceSource(bitmapWidth, bitmapHeight, pixels)));
+        MultiFormatReader reader = new MultiFormatReader();
+        Result[] results = decodeMultiple(binaryBitmap, reader, hints);
+        if (results.length == 0) {
+            Map<DecodeHintType, Object> tryHarderHints = new EnumMap<>(DecodeHintType.class);
+            tryHarderHints.putAll(hints);
+            tryHarderHints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+            results = decodeMultiple(binaryBitmap, reader, tryHarderHints);
+        }
+
+        float scaleX = (float) width / bitmapWidth;
+        float scaleY = (float) height / bitmapHeight;
+        List<Map<String, Object>> barcodes = new ArrayList<>(results.length);
+        for (Result decodeResult : results) {
+            barcodes.add(buildBarcode(decodeResult, scaleX, scaleY));
+        }
+        return barcodes;
+    }
+
+    private static Result[] decodeMultiple(BinaryBitmap binaryBitmap, MultiFormatReader reader, Map<DecodeHintType, Object> hints) {
+        try {
+            return new GenericMultipleBarcodeReader(reader).decodeMultiple(binaryBitmap, hints);
+        } catch (NotFoundException e) {
+            return new Result[0];
+        }
+    }
+
+    private static Bitmap decodeBitmap(Object image, BitmapFactory.Options options) {
+        if (image instanceof byte[]) {
+            byte[] bytes = (byte[]) image;
+            return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        } else if ((image instanceof String) && Utils.Str.isNotEmpty((String) image)) {
+            return BitmapFactory.decodeFile((String) image, options);
+        } else {
+            return null;
+        }
+    }
+
+    private static Map<String, Object> buildBarcode(Result decodeResult, float scaleX, float scaleY) {
+        ResultPoint[] resultPoints = decodeResult.getResultPoints();
+        int pointsCount = (resultPoints != null) ? resultPoints.length : 0;
+        double[] points = new double[2 * pointsCount];
+        for (int index = 0; index < pointsCount; index++) {
+            ResultPoint point = resultPoints[index];
+            if (point != null) {
+                points[2 * index] = point.getX() * scaleX;
+                points[2 * index + 1] = point.getY() * scaleY;
+            }
+        }
+        Map<String, Object> barcode = new HashMap<>();
+        barcode.put("format", BarcodeRequest.formatToString(decodeResult.getBarcodeFormat()));
+        barcode.put("text", decodeResult.getText());
+        barcode.put("points", points);
+        return barcode;
+    }
+
+    private static Map<DecodeHintType, Object> buildHints(Object params) {
+        Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+        Object formatsObject = (params instanceof Map) ? ((Map<?, ?>) params).get("formats") : null;
+        if (formatsObject instanceof List) {
+            List<BarcodeFormat> formats = new ArrayList<>();
+            for (Object formatObject : (List<?>) formatsObject) {
+                BarcodeFormat format = (formatObject instanceof String) ? BarcodeRequest.formatFromString((String) formatObject) : null;
+                if (format != null) {
+                    formats.add(format);
+                }
+            }
+            if (!formats.isEmpty()) {
+                hints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+            }
+        }
+        return hints;
+    }
+
+    private static List<Object> toList(Object[] values) {
+        List<Object> list = new ArrayList<>(values.length);
+        for (Object value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import com.google.zxing.Writer;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Barcode image pipeline: zxing encode and either 1 bit PNG compression or vector module grid.
+ * Safe to call from any thread, stops early when the calling thread gets interrupted.
+ */
+public class BarcodeEncoder {
+
+    // Two colors images stay small even with the fastest compression level.
+    private static final int PNG_COMPRESSION_LEVEL = Deflater.BEST_SPEED;
+    private static final int PNG_COMPRESSION_STRATEGY = Deflater.DEFAULT_STRATEGY;
+    private static final int PNG_FILTER_TYPE = BarcodePngEncoder.FILTER_NONE;
+
+    private static final ThreadLocal<BarcodePngEncoder> PNG_ENCODERS = new ThreadLocal<BarcodePngEncoder>() {
+        @Override
+        protected BarcodePngEncoder initialValue() {
+            return new BarcodePngEncoder(PNG_COMPRESSION_LEVEL, PNG_COMPRESSION_STRATEGY, PNG_FILTER_TYPE);
+        }
+    };
+
+    static byte[] encodePng(BarcodeRequest request) throws WriterException {
+        BitMatrix bitMatrix = encodeMatrix(request);
+        if ((bitMatrix == null) || Thread.currentThread().isInterrupted()) {
+            return null;
+        }
+        return PNG_ENCODERS.get().encode(bitMatrix);
+    }
+
+    /**
+     * Encodes the module grid of the barcode.
+     * @return map with "width" and "height" in modules, and either "runs" (see {@link BarcodeVector#encodeRuns})
+     * or "path" (SVG path data) depending on the requested output.
+     */
+    static Map<String, Object> encodeVector(BarcodeRequest request) throws WriterException {
+        BitMatrix bitMatrix = encodeMatrix(request);
+        if ((bitMatrix == null) || Thread.currentThread().isInterrupted()) {
+            return null;
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("width", bitMatrix.getWidth());
+        result.put("height", bitMatrix.getHeight());
+        if (BarcodeRequest.OUTPUT_SVG.equals(request.output)) {
+            result.put("path", BarcodeVector.encodeSvgPath(bitMatrix));
+        } else {
+            result.put("runs", BarcodeVector.encodeRuns(bitMatrix));
+        }
+        return result;
+    }
+
+    private static BitMatrix encodeMatrix(BarcodeRequest request) throws WriterException {
+        Writer writer = BarcodeWriters.getWriter(request.format);
+        if (writer == null) {
+            throw new IllegalArgumentException("No encoder available for format " + request.format);
+        }
+        return writer.encode(request.content, request.format, request.width, request.height, request.hints);
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import com.google.zxing.common.BitMatrix;
+
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a {@link BitMatrix} as 1 bit grayscale PNG (IHDR, IDAT, IEND chunks) without going through Bitmap.
+ * <p>
+ * Rows are packed and deflated one at a time straight into a reused output buffer, so the only allocation per
+ * image is the returned byte array. Uses plain JVM APIs only, an instance is not thread safe.
+ */
+public class BarcodePngEncoder {
+
+    public static final int FILTER_NONE = 0;
+    public static final int FILTER_UP = 2;
+
+    private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final byte[] CHUNK_IHDR = { 'I', 'H', 'D', 'R' };
+    private static final byte[] CHUNK_IDAT = { 'I', 'D', 'A', 'T' };
+    private static final byte[] CHUNK_IEND = { 'I', 'E', 'N', 'D' };
+    private static final int IHDR_DATA_LENGTH = 13;
+    private static final int CHUNK_OVERHEAD = 12; // length + type + crc
+    private static final int BIT_DEPTH = 1;
+    private static final int COLOR_TYPE_GRAYSCALE = 0;
+
+    private static final int MIN_FREE_OUTPUT_SPACE = 256;
+    // Do not keep huge buffers around after an unusually large barcode.
+    private static final int MAX_RETAINED_OUTPUT_SIZE = 256 * 1024;
+
+    private final int filterType;
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final BarcodeRaster raster = new BarcodeRaster();
+
+    private byte[] output = new byte[0];
+    private int outputLength;
+    private byte[] currentRow = new byte[0];
+    private byte[] previousRow = new byte[0];
+    private byte[] filteredRow = new byte[0];
+
+    /**
+     * @param compressionLevel {@link Deflater} compression level, 0 to 9.
+     * @param strategy {@link Deflater#DEFAULT_STRATEGY}, {@link Deflater#FILTERED} or {@link Deflater#HUFFMAN_ONLY}.
+     * @param filterType PNG scanline filter applied to every row, {@link #FILTER_NONE} or {@link #FILTER_UP}.
+     */
+    public BarcodePngEncoder(int compressionLevel, int strategy, int filterType) {
+        this.filterType = filterType;
+        deflater = new Deflater(compressionLevel);
+        deflater.setStrategy(strategy);
+    }
+
+    public byte[] encode(BitMatrix matrix) {
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+        int stride = BarcodeRaster.getRowStride(width);
+        prepareBuffers(stride, height);
+
+        System.arraycopy(PNG_SIGNATURE, 0, output, 0, PNG_SIGNATURE.length);
+        outputLength = PNG_SIGNATURE.length;
+
+        int headerOffset = beginChunk(CHUNK_IHDR);
+        writeInt(width);
+        writeInt(height);
+        output[outputLength++] = BIT_DEPTH;
+        output[outputLength++] = COLOR_TYPE_GRAYSCALE;
+        output[outputLength++] = 0; // compression method
+        output[outputLength++] = 0; // filter method
+        output[outputLength++] = 0; // interlace method
+        endChunk(headerOffset);
+
+        int dataOffset = beginChunk(CHUNK_IDAT);
+        deflater.reset();
+        Arrays.fill(previousRow, 0, stride, (byte) 0);
+        for (int y = 0; y < height; y++) {
+            raster.packRow(matrix, y, currentRow, 1);
+            filterRow(stride);
+            deflater.setInput(filteredRow, 0, stride);
+            while (!deflater.needsInput()) {
+                deflate();
+            }
+            byte[] row = previousRow;
+            previousRow = currentRow;
+            currentRow = row;
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            deflate();
+        }
+        endChunk(dataOffset);
+
+        endChunk(beginChunk(CHUNK_IEND));
+
+        byte[] result = Arrays.copyOf(output, outputLength);
+        if (output.length > MAX_RETAINED_OUTPUT_SIZE) {
+            output = new byte[0];
+        }
+        return result;
+    }
+
+    /**
+     * Releases the native deflater resources. The encoder cannot be used afterwards.
+     */
+    public void release() {
+        deflater.end();
+    }
+
+    private void prepareBuffers(int stride, int height) {
+        if (currentRow.length < stride) {
+            currentRow = new byte[stride];
+            previousRow = new byte[stride];
+            filteredRow = new byte[stride];
+        }
+        // Two colors images deflate very well, start with a fraction of the raw raster size.
+        int estimatedSize = PNG_SIGNATURE.length + 3 * CHUNK_OVERHEAD + IHDR_DATA_LENGTH + (stride * height) / 8 + MIN_FREE_OUTPUT_SPACE;
+        if (output.length < estimatedSize) {
+            output = new byte[estimatedSize];
+        }
+    }
+
+    private void filterRow(int stride) {
+        filteredRow[0] = (byte) filterType;
+        if (filterType == FILTER_UP) {
+            for (int index = 1; index < stride; index++) {
+                filteredRow[index] = (byte) (currentRow[index] - previousRow[index]);
+            }
+        } else {
+            System.arraycopy(currentRow, 1, filteredRow, 1, stride - 1);
+        }
+    }
+
+    private void deflate() {
+        ensureCapacity(MIN_FREE_OUTPUT_SPACE);
+        outputLength += deflater.deflate(output, outputLength, output.length - outputLength);
+    }
+
+    private int beginChunk(byte[] type) {
+        ensureCapacity(CHUNK_OVERHEAD + IHDR_DATA_LENGTH);
+        int chunkOffset = outputLength;
+        outputLength += 4; // length, written in endChunk
+        System.arraycopy(type, 0, output, outputLength, type.length);
+        outputLength += type.length;
+        return chunkOffset;
+    }
+
+    private void endChunk(int chunkOffset) {
+        int typeOffset = chunkOffset + 4;
+        int dataLength = outputLength - typeOffset - 4;
+        crc.reset();
+        crc.update(output, typeOffset, outputLength - typeOffset);
+        int chunkEnd = outputLength;
+        outputLength = chunkOffset;
+        writeInt(dataLength);
+        outputLength = chunkEnd;
+        ensureCapacity(4);
+        writeInt((int) crc.getValue());
+    }
+
+    private void writeInt(int value) {
+        output[outputLength++] = (byte) (value >>> 24);
+        output[outputLength++] = (byte) (value >>> 16);
+        output[outputLength++] = (byte) (value >>> 8);
+        output[outputLength++] = (byte) value;
+    }
+
+    private void ensureCapacity(int freeSpace) {
+        if (output.length - outputLength < freeSpace) {
+            output = Arrays.copyOf(output, Math.max(output.length * 2, outputLength + freeSpace));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * Converts a {@link BitMatrix} into 1 bit per pixel grayscale scanlines, laid out as PNG expects them:
+ * each row starts with a filter type byte followed by the pixels packed MSB first, 0 for black and 1 for white.
+ * <p>
+ * Rows are read in bulk through {@link BitMatrix#getRow} into a reused {@link BitArray}, so packing a row does not
+ * allocate. An instance is not thread safe.
+ */
+public class BarcodeRaster {
+
+    private static final byte[] REVERSED_BITS = new byte[256];
+    static {
+        for (int value = 0; value < 256; value++) {
+            REVERSED_BITS[value] = (byte) (Integer.reverse(value) >>> 24);
+        }
+    }
+
+    private BitArray rowBits;
+
+    /**
+     * @return the number of bytes of a single scanline, including the filter type byte.
+     */
+    static int getRowStride(int width) {
+        return 1 + ((width + 7) >> 3);
+    }
+
+    /**
+     * Writes the pixels of a single row (without filter type byte) into target starting at offset.
+     */
+    void packRow(BitMatrix matrix, int y, byte[] target, int offset) {
+        rowBits = matrix.getRow(y, rowBits);
+        int[] bits = rowBits.getBitArray();
+        int bytesCount = (matrix.getWidth() + 7) >> 3;
+        for (int byteIndex = 0; byteIndex < bytesCount; byteIndex++) {
+            // BitArray stores pixels LSB first and uses 1 for black, PNG grayscale expects MSB first and 1 for white.
+            int value = (bits[byteIndex >> 2] >>> ((byteIndex & 3) << 3)) & 0xFF;
+            target[offset + byteIndex] = (byte) ~REVERSED_BITS[value];
+        }
+    }
+}
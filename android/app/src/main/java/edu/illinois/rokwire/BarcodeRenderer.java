@@ -0,0 +1,198 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import android.util.Base64;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.zxing.WriterException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * Renders barcode images on a small bounded pool of background threads, replies go through {@link AsyncResult}.
+ * Requests that do not fit in the queue are answered with a {@link NativeHandlerRegistry#BUSY_ERROR_CODE} error right
+ * away instead of piling up. Calls are bounded by their reply timeout, the pools live as long as the process.
+ * A batch takes a single slot in that queue and spreads its items over a separate bounded pool.
+ */
+public class BarcodeRenderer {
+
+    private static final String TAG = "BarcodeRenderer";
+
+    private static final int THREADS_COUNT = 2;
+    private static final int MAX_QUEUE_DEPTH = 4;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final int BATCH_THREADS_COUNT = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final int MAX_BATCH_SIZE = 32;
+    private static final long RENDER_TIMEOUT_MS = 10000;
+    private static final long BATCH_TIMEOUT_MS = 30000;
+
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor batchExecutor;
+    private final BarcodeCache cache;
+
+    BarcodeRenderer(BarcodeCache cache) {
+        this.cache = cache;
+        executor = new ThreadPoolExecutor(THREADS_COUNT, THREADS_COUNT, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUE_DEPTH), new BackgroundThreadFactory("barcode-render-"), new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        batchExecutor = new ThreadPoolExecutor(BATCH_THREADS_COUNT, BATCH_THREADS_COUNT, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(THREADS_COUNT * MAX_BATCH_SIZE), new BackgroundThreadFactory("barcode-render-"), new ThreadPoolExecutor.AbortPolicy());
+        batchExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    void render(Object params, @NonNull MethodChannel.Result methodResult) {
+        AsyncResult result = AsyncResult.of(methodResult, Constants.BARCODE_KEY).setTimeout(RENDER_TIMEOUT_MS);
+        BarcodeRequest request = BarcodeRequest.fromParams(params);
+        if (request == null) {
+            result.success(null);
+            return;
+        }
+        boolean binary = Utils.Map.getValueFromPath(params, "binary", false);
+        byte[] cachedImageBytes = ((cache != null) && !request.isVector()) ? cache.getFromMemory(request) : null;
+        if (cachedImageBytes != null) {
+            result.success(buildReply(cachedImageBytes, binary));
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                Object barcodeData = null;
+                try {
+                    barcodeData = renderReply(request, binary);
+                } catch (Exception e) {
+                    Log.e(TAG, "Failed to encode image: " + e);
+                }
+                result.success(barcodeData);
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Barcode render queue is full, dropping request");
+            replyBusy(result);
+        }
+    }
+
+    /**
+     * Renders all items of a "barcodeBatch" call and replies once with a list in the same order.
+     * Each list entry is a map with either "data" (same as the "barcode" reply) or "error" key, so a single failing
+     * item does not fail the whole batch.
+     */
+    void renderBatch(Object params, @NonNull MethodChannel.Result methodResult) {
+        AsyncResult result = AsyncResult.of(methodResult, Constants.BARCODE_BATCH_KEY).setTimeout(BATCH_TIMEOUT_MS);
+        Object itemsObject = (params instanceof Map) ? ((Map<?, ?>) params).get("items") : null;
+        if (!(itemsObject instanceof List) || (((List<?>) itemsObject).size() > MAX_BATCH_SIZE)) {
+            result.success(null);
+            return;
+        }
+        List<?> items = (List<?>) itemsObject;
+        boolean binary = Utils.Map.getValueFromPath(params, "binary", false);
+        try {
+            executor.execute(() -> {
+                List<Future<Object>> futures = new ArrayList<>(items.size());
+                List<Object> batchResult = new ArrayList<>(items.size());
+                try {
+                    for (Object item : items) {
+                        BarcodeRequest request = BarcodeRequest.fromParams(item);
+                        futures.add((request != null) ? batchExecutor.submit(() -> renderReply(request, binary)) : null);
+                    }
+                    for (Future<Object> future : futures) {
+                        batchResult.add(getBatchItemResult(future));
+                    }
+                } catch (InterruptedException | RejectedExecutionException e) {
+                    for (Future<Object> future : futures) {
+                        if (future != null) {
+                            future.cancel(true);
+                        }
+                    }
+                    Log.w(TAG, "Barcode batch items not rendered: " + e);
+                    replyBusy(result);
+                    return;
+                }
+                result.success(batchResult);
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Barcode render queue is full, dropping batch request");
+            replyBusy(result);
+        }
+    }
+
+    Map<String, Object> getCacheStats() {
+        return (cache != null) ? cache.getStats() : null;
+    }
+
+    private static void replyBusy(AsyncResult result) {
+        result.error(NativeHandlerRegistry.BUSY_ERROR_CODE, "Barcode render queue is full", null);
+    }
+
+    private Object renderReply(BarcodeRequest request, boolean binary) throws WriterException {
+        return request.isVector() ? BarcodeEncoder.encodeVector(request) : buildReply(renderPng(request), binary);
+    }
+
+    private static Map<String, Object> getBatchItemResult(Future<Object> future) throws InterruptedException {
+        Map<String, Object> itemResult = new HashMap<>();
+        if (future == null) {
+            itemResult.put("error", "Invalid barcode request");
+            return itemResult;
+        }
+        try {
+            Object data = future.get();
+            if (data != null) {
+                itemResult.put("data", data);
+            } else {
+                itemResult.put("error", "Failed to encode image");
+            }
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Failed to encode image: " + e.getCause());
+            itemResult.put("error", String.valueOf(e.getCause()));
+        }
+        return itemResult;
+    }
+
+    private byte[] renderPng(BarcodeRequest request) throws WriterException {
+        byte[] imageBytes = (cache != null) ? cache.get(request) : null;
+        if (imageBytes == null) {
+            imageBytes = BarcodeEncoder.encodePng(request);
+            if ((imageBytes != null) && (cache != null)) {
+                cache.put(request, imageBytes);
+            }
+        }
+        return imageBytes;
+    }
+
+    /**
+     * Callers that send "binary": true get the raw PNG bytes, delivered as Uint8List by the standard codec.
+     * Older callers get the Base64 encoded string.
+     */
+    private static Object buildReply(byte[] imageBytes, boolean binary) {
+        if (imageBytes == null) {
+            return null;
+        }
+        return binary ? imageBytes : Base64.encodeToString(imageBytes, Base64.NO_WRAP);
+    }
+}
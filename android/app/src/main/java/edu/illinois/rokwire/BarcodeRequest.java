@@ -0,0 +1,206 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable description of a single barcode image request coming from the "barcode" method call.
+ */
+public class BarcodeRequest {
+
+    // Output modes
+    static final String OUTPUT_PNG = "png";
+    static final String OUTPUT_MODULES = "modules";
+    static final String OUTPUT_SVG = "svg";
+
+    final String content;
+    final BarcodeFormat format;
+    final int width;
+    final int height;
+    final String output;
+    final Map<EncodeHintType, Object> hints;
+
+    BarcodeRequest(String content, BarcodeFormat format, int width, int height) {
+        this(content, format, width, height, OUTPUT_PNG, BarcodeWriters.buildHints(format, null));
+    }
+
+    BarcodeRequest(String content, BarcodeFormat format, int width, int height, String output, Map<EncodeHintType, Object> hints) {
+        this.content = content;
+        this.format = format;
+        this.width = width;
+        this.height = height;
+        this.output = output;
+        this.hints = hints;
+    }
+
+    /**
+     * Vector outputs describe the module grid of the barcode, they do not depend on width and height.
+     */
+    boolean isVector() {
+        return OUTPUT_MODULES.equals(output) || OUTPUT_SVG.equals(output);
+    }
+
+    /**
+     * Builds a request from the method call arguments.
+     * @return null if the arguments do not describe a barcode that could be encoded.
+     */
+    static BarcodeRequest fromParams(Object params) {
+        String content = Utils.Map.getValueFromPath(params, "content", null);
+        String format = Utils.Map.getValueFromPath(params, "format", null);
+        int width = Utils.Map.getValueFromPath(params, "width", 0);
+        int height = Utils.Map.getValueFromPath(params, "height", 0);
+        String output = outputFromString(Utils.Map.getValueFromPath(params, "output", null));
+        BarcodeFormat barcodeFormat = formatFromString(format);
+        if (Utils.Str.isNotEmpty(content) && (barcodeFormat != null)) {
+            if (OUTPUT_MODULES.equals(output) || OUTPUT_SVG.equals(output)) {
+                // Zero size makes zxing render one pixel per module.
+                return new BarcodeRequest(content, barcodeFormat, 0, 0, output, BarcodeWriters.buildHints(barcodeFormat, params));
+            } else if ((0 < width) && (0 < height)) {
+                return new BarcodeRequest(content, barcodeFormat, width, height, output, BarcodeWriters.buildHints(barcodeFormat, params));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stable textual form of the request, used as persistent cache key.
+     */
+    String cacheKey() {
+        return format.name() + '|' + width + 'x' + height + '|' + output + '|' + hints + '|' + content;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof BarcodeRequest)) {
+            return false;
+        }
+        BarcodeRequest request = (BarcodeRequest) object;
+        return (width == request.width) && (height == request.height) && (format == request.format) &&
+                output.equals(request.output) && hints.equals(request.hints) && content.equals(request.content);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(content, format, width, height, output, hints);
+    }
+
+    static String outputFromString(String output) {
+        if (OUTPUT_MODULES.equals(output)) {
+            return OUTPUT_MODULES;
+        } else if (OUTPUT_SVG.equals(output)) {
+            return OUTPUT_SVG;
+        } else {
+            return OUTPUT_PNG;
+        }
+    }
+
+    static BarcodeFormat formatFromString(String format) {
+        if (Utils.Str.isEmpty(format)) {
+            return null;
+        }
+        switch (format) {
+            case "aztec":
+                return BarcodeFormat.AZTEC;
+            case "codabar":
+                return BarcodeFormat.CODABAR;
+            case "code39":
+                return BarcodeFormat.CODE_39;
+            case "code93":
+                return BarcodeFormat.CODE_93;
+            case "code128":
+                return BarcodeFormat.CODE_128;
+            case "dataMatrix":
+                return BarcodeFormat.DATA_MATRIX;
+            case "ean8":
+                return BarcodeFormat.EAN_8;
+            case "ean13":
+                return BarcodeFormat.EAN_13;
+            case "itf":
+                return BarcodeFormat.ITF;
+            case "maxiCode":
+                return BarcodeFormat.MAXICODE;
+            case "pdf417":
+                return BarcodeFormat.PDF_417;
+            case "qrCode":
+                return BarcodeFormat.QR_CODE;
+            case "rss14":
+                return BarcodeFormat.RSS_14;
+            case "rssExpanded":
+                return BarcodeFormat.RSS_EXPANDED;
+            case "upca":
+                return BarcodeFormat.UPC_A;
+            case "upce":
+                return BarcodeFormat.UPC_E;
+            case "upceanExtension":
+                return BarcodeFormat.UPC_EAN_EXTENSION;
+            default:
+                return null;
+        }
+    }
+
+    static String formatToString(BarcodeFormat format) {
+        if (format == null) {
+            return null;
+        }
+        switch (format) {
+            case AZTEC:
+                return "aztec";
+            case CODABAR:
+                return "codabar";
+            case CODE_39:
+                return "code39";
+            case CODE_93:
+                return "code93";
+            case CODE_128:
+                return "code128";
+            case DATA_MATRIX:
+                return "dataMatrix";
+            case EAN_8:
+                return "ean8";
+            case EAN_13:
+                return "ean13";
+            case ITF:
+                return "itf";
+            case MAXICODE:
+                return "maxiCode";
+            case PDF_417:
+                return "pdf417";
+            case QR_CODE:
+                return "qrCode";
+            case RSS_14:
+                return "rss14";
+            case RSS_EXPANDED:
+                return "rssExpanded";
+            case UPC_A:
+                return "upca";
+            case UPC_E:
+                return "upce";
+            case UPC_EAN_EXTENSION:
+                return "upceanExtension";
+            default:
+                return null;
+        }
+    }
+}
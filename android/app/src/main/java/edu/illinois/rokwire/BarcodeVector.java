@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+import java.util.Arrays;
+
+/**
+ * Resolution independent barcode outputs built from a module grid (a {@link BitMatrix} with one pixel per module).
+ */
+public class BarcodeVector {
+
+    /**
+     * Run-length encodes the black modules of the matrix. Consecutive identical rows are merged into a single group,
+     * each group is written as {@code [rowsCount, runsCount, start0, length0, start1, length1, ...]}.
+     */
+    static int[] encodeRuns(BitMatrix matrix) {
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+        int[] runs = new int[64];
+        int runsLength = 0;
+        int groupOffset = -1;
+        BitArray row = new BitArray(width);
+        BitArray previousRow = new BitArray(width);
+        for (int y = 0; y < height; y++) {
+            row = matrix.getRow(y, row);
+            if ((groupOffset >= 0) && Arrays.equals(row.getBitArray(), previousRow.getBitArray())) {
+                runs[groupOffset]++;
+                continue;
+            }
+
+            if (runs.length < runsLength + 2) {
+                runs = Arrays.copyOf(runs, runs.length * 2);
+            }
+            groupOffset = runsLength;
+            runs[runsLength++] = 1;
+            int runsCountOffset = runsLength++;
+            int runsCount = 0;
+            int start = row.getNextSet(0);
+            while (start < width) {
+                int end = row.getNextUnset(start);
+                if (runs.length < runsLength + 2) {
+                    runs = Arrays.copyOf(runs, runs.length * 2);
+                }
+                runs[runsLength++] = start;
+                runs[runsLength++] = end - start;
+                runsCount++;
+                start = (end < width) ? row.getNextSet(end) : width;
+            }
+            runs[runsCountOffset] = runsCount;
+
+            BitArray swapRow = previousRow;
+            previousRow = row;
+            row = swapRow;
+        }
+        return Arrays.copyOf(runs, runsLength);
+    }
+
+    /**
+     * Builds SVG path data covering the black modules, in module units.
+     */
+    static String encodeSvgPath(BitMatrix matrix) {
+        return encodeSvgPath(encodeRuns(matrix));
+    }
+
+    static String encodeSvgPath(int[] runs) {
+        StringBuilder path = new StringBuilder(runs.length * 6);
+        int y = 0;
+        int index = 0;
+        while (index < runs.length) {
+            int rowsCount = runs[index++];
+            int runsCount = runs[index++];
+            for (int run = 0; run < runsCount; run++) {
+                int start = runs[index++];
+                int length = runs[index++];
+                path.append('M').append(start).append(' ').append(y)
+                        .append('h').append(length)
+                        .append('v').append(rowsCount)
+                        .append("h-").append(length)
+                        .append('z');
+            }
+            y += rowsCount;
+        }
+        return path.toString();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.Writer;
+import com.google.zxing.aztec.AztecWriter;
+import com.google.zxing.datamatrix.DataMatrixWriter;
+import com.google.zxing.oned.CodaBarWriter;
+import com.google.zxing.oned.Code128Writer;
+import com.google.zxing.oned.Code39Writer;
+import com.google.zxing.oned.Code93Writer;
+import com.google.zxing.oned.EAN13Writer;
+import com.google.zxing.oned.EAN8Writer;
+import com.google.zxing.oned.ITFWriter;
+import com.google.zxing.oned.UPCAWriter;
+import com.google.zxing.oned.UPCEWriter;
+import com.google.zxing.pdf417.PDF417Writer;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Shared zxing writers, one per supported format, and encode hints built from the "barcode" call arguments.
+ * zxing writers keep no state between encode calls, so the same instance serves all render threads.
+ */
+public class BarcodeWriters {
+
+    private static final Map<BarcodeFormat, Writer> WRITERS = new EnumMap<>(BarcodeFormat.class);
+    static {
+        WRITERS.put(BarcodeFormat.AZTEC, new AztecWriter());
+        WRITERS.put(BarcodeFormat.CODABAR, new CodaBarWriter());
+        WRITERS.put(BarcodeFormat.CODE_39, new Code39Writer());
+        WRITERS.put(BarcodeFormat.CODE_93, new Code93Writer());
+        WRITERS.put(BarcodeFormat.CODE_128, new Code128Writer());
+        WRITERS.put(BarcodeFormat.DATA_MATRIX, new DataMatrixWriter());
+        WRITERS.put(BarcodeFormat.EAN_8, new EAN8Writer());
+        WRITERS.put(BarcodeFormat.EAN_13, new EAN13Writer());
+        WRITERS.put(BarcodeFormat.ITF, new ITFWriter());
+        WRITERS.put(BarcodeFormat.PDF_417, new PDF417Writer());
+        WRITERS.put(BarcodeFormat.QR_CODE, new QRCodeWriter());
+        WRITERS.put(BarcodeFormat.UPC_A, new UPCAWriter());
+        WRITERS.put(BarcodeFormat.UPC_E, new UPCEWriter());
+    }
+
+    /**
+     * @return the writer for the format, or null if zxing cannot encode it (MaxiCode, RSS, UPC/EAN extension).
+     */
+    static Writer getWriter(BarcodeFormat format) {
+        return WRITERS.get(format);
+    }
+
+    /**
+     * Builds encode hints from the "hints" map of the call arguments:
+     * "errorCorrection" (QR: "L", "M", "Q" or "H"; Aztec: percent; PDF417: level 0-8), "margin", "charset" and "qrVersion".
+     * Unspecified hints fall back to the values giving the smallest valid symbol.
+     */
+    static Map<EncodeHintType, Object> buildHints(BarcodeFormat format, Object params) {
+        Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+
+        Object hintsParams = (params instanceof Map) ? ((Map<?, ?>) params).get("hints") : null;
+        String errorCorrection = Utils.Map.getValueFromPath(hintsParams, "errorCorrection", null);
+        int errorCorrectionValue = Utils.Map.getValueFromPath(hintsParams, "errorCorrection", -1);
+        int margin = Utils.Map.getValueFromPath(hintsParams, "margin", -1);
+        String charset = Utils.Map.getValueFromPath(hintsParams, "charset", null);
+        int qrVersion = Utils.Map.getValueFromPath(hintsParams, "qrVersion", 0);
+
+        if (format == BarcodeFormat.QR_CODE) {
+            hints.put(EncodeHintType.ERROR_CORRECTION, getQrErrorCorrectionLevel(errorCorrection));
+            if (qrVersion > 0) {
+                hints.put(EncodeHintType.QR_VERSION, qrVersion);
+            }
+        } else if (((format == BarcodeFormat.AZTEC) || (format == BarcodeFormat.PDF_417)) && (errorCorrectionValue >= 0)) {
+            hints.put(EncodeHintType.ERROR_CORRECTION, errorCorrectionValue);
+        }
+        if (margin >= 0) {
+            hints.put(EncodeHintType.MARGIN, margin);
+        }
+        if (Utils.Str.isNotEmpty(charset)) {
+            hints.put(EncodeHintType.CHARACTER_SET, charset);
+        }
+        return hints.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(hints);
+    }
+
+    private static ErrorCorrectionLevel getQrErrorCorrectionLevel(String value) {
+        if (value != null) {
+            switch (value) {
+                case "M":
+                    return ErrorCorrectionLevel.M;
+                case "Q":
+                    return ErrorCorrectionLevel.Q;
+                case "H":
+                    return ErrorCorrectionLevel.H;
+                default:
+                    break;
+            }
+        }
+        // Lowest level gives the smallest symbol, the cards are displayed on screen where damage is not a concern.
+        return ErrorCorrectionLevel.L;
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * Per method statistics of a method channel: calls count, replies by kind, latency from the call to its reply
+ * (asynchronous replies included) in microseconds, and estimated argument and reply sizes in bytes.
+ * <p>
+ * Recording is lock free, so the interceptor can stay enabled in production builds.
+ */
+public class ChannelMetrics {
+
+    private static final String TAG = "ChannelMetrics";
+
+    // Values sized per argument or reply, about what a main thread call can afford.
+    private static final int MAX_SIZED_VALUES = 256;
+
+    // Replaced whole by reset, the handlers read it once per call.
+    private volatile ConcurrentHashMap<String, MethodStats> methods = new ConcurrentHashMap<>();
+
+    /**
+     * @return a handler that records every call before passing it to handler.
+     */
+    public MethodChannel.MethodCallHandler intercept(@NonNull MethodChannel.MethodCallHandler handler) {
+        return (methodCall, result) -> {
+            MethodStats stats = getMethodStats(methodCall.method);
+            stats.calls.incrementAndGet();
+            stats.argumentsSize.record(estimateSize(methodCall.arguments));
+            handler.onMethodCall(methodCall, new TimedResult(result, stats, System.nanoTime()));
+        };
+    }
+
+    public Map<String, Object> toMap() {
+        return toMap(methods);
+    }
+
+    /**
+     * Starts over and returns the metrics recorded until now. The swap is atomic, so a call started on the calling
+     * thread is counted either in the returned metrics or in the new ones. Replies that arrive after the reset to calls
+     * made before it, and the call counts of background channel calls racing with it, go to the old stats and are lost.
+     */
+    public Map<String, Object> reset() {
+        ConcurrentHashMap<String, MethodStats> previousMethods = methods;
+        methods = new ConcurrentHashMap<>();
+        return toMap(previousMethods);
+    }
+
+    public static void dumpToLog(Map<String, Object> metrics) {
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            Log.i(TAG, entry.getKey() + ": " + entry.getValue());
+        }
+    }
+
+    /**
+     * Writes the metrics, one method per line, to file.
+     */
+    public static boolean dumpToFile(Map<String, Object> metrics, File file) {
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            content.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+        try (FileOutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(content.toString().getBytes(StandardCharsets.UTF_8));
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write metrics to " + file, e);
+            return false;
+        }
+    }
+
+    private static Map<String, Object> toMap(Map<String, MethodStats> methods) {
+        Map<String, Object> result = new HashMap<>();
+        for (Map.Entry<String, MethodStats> entry : methods.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toMap());
+        }
+        return result;
+    }
+
+    private MethodStats getMethodStats(String method) {
+        String key = (method != null) ? method : "";
+        ConcurrentHashMap<String, MethodStats> methods = this.methods;
+        MethodStats stats = methods.get(key);
+        if (stats == null) {
+            stats = new MethodStats();
+            MethodStats existingStats = methods.putIfAbsent(key, stats);
+            if (existingStats != null) {
+                stats = existingStats;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Approximates the size of a value encoded by StandardMessageCodec, without encoding it. Large values, as the
+     * "init" config, are not walked whole on the calling thread: past {@link #MAX_SIZED_VALUES} values, the remaining
+     * entries of a list or map are extrapolated from the ones sized.
+     */
+    static long estimateSize(Object value) {
+        return estimateSize(value, new int[] { MAX_SIZED_VALUES });
+    }
+
+    private static long estimateSize(Object value, int[] budget) {
+        budget[0]--;
+        if (value == null || value instanceof Boolean) {
+            return 1;
+        } else if (value instanceof Integer) {
+            return 5;
+        } else if (value instanceof Number) {
+            return 9;
+        } else if (value instanceof String) {
+            // Exact for ASCII, close enough for the rest.
+            return 2 + ((String) value).length();
+        } else if (value instanceof byte[]) {
+            return 5 + ((byte[]) value).length;
+        } else if (value instanceof int[]) {
+            return 5 + 4L * ((int[]) value).length;
+        } else if (value instanceof long[]) {
+            return 5 + 8L * ((long[]) value).length;
+        } else if (value instanceof double[]) {
+            return 5 + 8L * ((double[]) value).length;
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            long size = 0;
+            int sizedCount = 0;
+            for (Object item : list) {
+                if (budget[0] <= 0) {
+                    break;
+                }
+                size += estimateSize(item, budget);
+                sizedCount++;
+            }
+            return 2 + extrapolateSize(size, sizedCount, list.size());
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            long size = 0;
+            int sizedCount = 0;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (budget[0] <= 0) {
+                    break;
+                }
+                size += estimateSize(entry.getKey(), budget) + estimateSize(entry.getValue(), budget);
+                sizedCount++;
+            }
+            return 2 + extrapolateSize(size, sizedCount, map.size());
+        } else {
+            return 1;
+        }
+    }
+
+    private static long extrapolateSize(long size, int sizedCount, int count) {
+        if (sizedCount == count) {
+            return size;
+        } else if (sizedCount == 0) {
+            return count;
+        } else {
+            return size * count / sizedCount;
+        }
+    }
+
+    private static class MethodStats {
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong successes = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong notImplemented = new AtomicLong();
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LatencyHistogram argumentsSize = new LatencyHistogram();
+        final LatencyHistogram replySize = new LatencyHistogram();
+
+        Map<String, Object> toMap() {
+            Map<String, Object> result = new HashMap<>();
+            result.put("calls", calls.get());
+            result.put("successes", successes.get());
+            result.put("errors", errors.get());
+            result.put("notImplemented", notImplemented.get());
+            result.put("latencyUs", histogramToMap(latency));
+            result.put("argumentsBytes", histogramToMap(argumentsSize));
+            result.put("replyBytes", histogramToMap(replySize));
+            return result;
+        }
+
+        private static Map<String, Object> histogramToMap(LatencyHistogram histogram) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("count", histogram.getCount());
+            result.put("mean", histogram.getMean());
+            result.put("p50", histogram.getPercentile(50));
+            result.put("p90", histogram.getPercentile(90));
+            result.put("p99", histogram.getPercentile(99));
+            result.put("max", histogram.getMax());
+            result.put("total", histogram.getTotal());
+            return result;
+        }
+    }
+
+    private static class TimedResult implements MethodChannel.Result {
+        private final MethodChannel.Result result;
+        private final MethodStats stats;
+        private final long startTime;
+
+        TimedResult(MethodChannel.Result result, MethodStats stats, long startTime) {
+            this.result = result;
+            this.stats = stats;
+            this.startTime = startTime;
+        }
+
+        @Override
+        public void success(Object reply) {
+            record(stats.successes, estimateSize(reply));
+            result.success(reply);
+        }
+
+        @Override
+        public void error(String errorCode, String errorMessage, Object errorDetails) {
+            record(stats.errors, estimateSize(errorCode) + estimateSize(errorMessage) + estimateSize(errorDetails));
+            result.error(errorCode, errorMessage, errorDetails);
+        }
+
+        @Override
+        public void notImplemented() {
+            record(stats.notImplemented, 0);
+            result.notImplemented();
+        }
+
+        private void record(AtomicLong counter, long replySize) {
+            stats.latency.record((System.nanoTime() - startTime) / 1000L);
+            stats.replySize.record(replySize);
+            counter.incrementAndGet();
+        }
+    }
+}
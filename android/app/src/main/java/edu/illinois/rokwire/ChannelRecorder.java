@@ -0,0 +1,179 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * Records the calls of the native channels to a {@link ChannelRecording} file, to be replayed on the host JVM.
+ * <p>
+ * Calls are timestamped on arrival and written by a single background thread. While not recording, the interceptor
+ * costs a single volatile read per call. Calls that do not fit in the write queue are dropped and counted.
+ * <p>
+ * Recordings hold every call argument in clear, config and barcode contents included: debug builds only.
+ */
+public class ChannelRecorder {
+
+    private static final String TAG = "ChannelRecorder";
+
+    private static final int MAX_QUEUE_DEPTH = 256;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final ThreadPoolExecutor executor;
+    private volatile Recording recording;
+
+    ChannelRecorder() {
+        executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new ArrayBlockingQueue<>(MAX_QUEUE_DEPTH),
+                new BackgroundThreadFactory("channel-recorder-"), new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @param channel {@link ChannelRecording#CHANNEL_MAIN} or {@link ChannelRecording#CHANNEL_BACKGROUND}.
+     * @return a handler that records every call before passing it to handler.
+     */
+    public MethodChannel.MethodCallHandler intercept(int channel, @NonNull MethodChannel.MethodCallHandler handler) {
+        return (methodCall, result) -> {
+            Recording currentRecording = recording;
+            if (currentRecording != null) {
+                currentRecording.record(channel, methodCall);
+            }
+            handler.onMethodCall(methodCall, result);
+        };
+    }
+
+    /**
+     * Starts recording to file, replacing its content. A recording in progress is stopped first.
+     * Blocks until the file is open, not to be called on the main thread.
+     */
+    synchronized Map<String, Object> start(@NonNull File file) {
+        stop();
+        // Opened by the writer thread, after the previous recording is closed: it may be the same file.
+        try {
+            ChannelRecording.Writer writer = executor.submit(() -> new ChannelRecording.Writer(new FileOutputStream(file))).get();
+            recording = new Recording(file, writer);
+            Log.i(TAG, "Recording native channel calls to " + file);
+        } catch (ExecutionException | RejectedExecutionException e) {
+            Log.e(TAG, "Failed to start recording to " + file, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return getStatus();
+    }
+
+    /**
+     * Blocks until the recording is closed, not to be called on the main thread.
+     */
+    synchronized Map<String, Object> stop() {
+        Map<String, Object> status = getStatus();
+        Recording stoppedRecording = recording;
+        if (stoppedRecording != null) {
+            recording = null;
+            // Queued after the pending writes, so they still reach the file. Waited for, so a new recording does not
+            // open the file before it is closed.
+            try {
+                executor.submit(stoppedRecording::close).get();
+            } catch (ExecutionException | RejectedExecutionException e) {
+                Log.e(TAG, "Failed to close " + stoppedRecording.file, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Log.i(TAG, String.format("Recorded %d native channel calls to %s", stoppedRecording.recordedCalls.get(), stoppedRecording.file));
+        }
+        status.put("recording", false);
+        return status;
+    }
+
+    synchronized Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        Recording currentRecording = recording;
+        status.put("recording", currentRecording != null);
+        if (currentRecording != null) {
+            status.put("file", currentRecording.file.getAbsolutePath());
+            status.put("calls", currentRecording.recordedCalls.get());
+            status.put("dropped", currentRecording.droppedCalls.get());
+        }
+        return status;
+    }
+
+    private class Recording {
+        final File file;
+        final ChannelRecording.Writer writer;
+        final long startTime = System.nanoTime();
+        final AtomicLong recordedCalls = new AtomicLong();
+        final AtomicLong droppedCalls = new AtomicLong();
+        private boolean closed;
+
+        Recording(File file, ChannelRecording.Writer writer) {
+            this.file = file;
+            this.writer = writer;
+        }
+
+        void record(int channel, MethodCall methodCall) {
+            if (Constants.CHANNEL_RECORDING_KEY.equals(methodCall.method)) {
+                return;
+            }
+            long timeUs = (System.nanoTime() - startTime) / 1000L;
+            try {
+                executor.execute(() -> write(timeUs, channel, methodCall));
+                recordedCalls.incrementAndGet();
+            } catch (RejectedExecutionException e) {
+                droppedCalls.incrementAndGet();
+            }
+        }
+
+        // Runs on the recorder thread only, as does close.
+        private void write(long timeUs, int channel, MethodCall methodCall) {
+            if (closed) {
+                return;
+            }
+            try {
+                writer.write(timeUs, channel, methodCall.method, methodCall.arguments);
+                writer.flush();
+            } catch (IOException e) {
+                closed = true;
+                Log.e(TAG, "Failed to write to " + file, e);
+            }
+        }
+
+        void close() {
+            closed = true;
+            try {
+                writer.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to close " + file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,398 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compact binary format of recorded native channel calls, written by {@link ChannelRecorder} on the device and read
+ * by the replay harness of the benchmarks module on the host JVM, so it has no Android dependency.
+ * <p>
+ * The file is gzip compressed. It starts with the "RKCR" magic and a version byte, then holds one record per call:
+ * <ul>
+ *   <li>time since the previous call in microseconds, varint;</li>
+ *   <li>channel, {@link #CHANNEL_MAIN} or {@link #CHANNEL_BACKGROUND}, one byte;</li>
+ *   <li>method, index in the names seen so far as varint, a name seen for the first time follows as a string;</li>
+ *   <li>arguments, a tagged value.</li>
+ * </ul>
+ * Values are the StandardMessageCodec types, with varint lengths and zigzag varint integers.
+ * A recording cut in the middle of a record, by a process kill for instance, reads up to its last complete record.
+ */
+public class ChannelRecording {
+
+    public static final int CHANNEL_MAIN = 0;
+    public static final int CHANNEL_BACKGROUND = 1;
+
+    private static final byte[] MAGIC = { 'R', 'K', 'C', 'R' };
+    private static final int VERSION = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_TRUE = 1;
+    private static final int TAG_FALSE = 2;
+    private static final int TAG_INT = 3;
+    private static final int TAG_LONG = 4;
+    private static final int TAG_DOUBLE = 5;
+    private static final int TAG_STRING = 6;
+    private static final int TAG_BYTES = 7;
+    private static final int TAG_INTS = 8;
+    private static final int TAG_LONGS = 9;
+    private static final int TAG_DOUBLES = 10;
+    private static final int TAG_FLOATS = 11;
+    private static final int TAG_LIST = 12;
+    private static final int TAG_MAP = 13;
+
+    public static class Call {
+        public final long timeUs;
+        public final int channel;
+        public final String method;
+        public final Object arguments;
+
+        Call(long timeUs, int channel, String method, Object arguments) {
+            this.timeUs = timeUs;
+            this.channel = channel;
+            this.method = method;
+            this.arguments = arguments;
+        }
+    }
+
+    /**
+     * Not thread safe, records are written from a single thread.
+     */
+    public static class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final Map<String, Integer> methods = new HashMap<>();
+        private long lastTimeUs;
+
+        public Writer(OutputStream outputStream) throws IOException {
+            // Sync flush makes every flushed record readable even if the stream is never closed.
+            out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(outputStream, true)));
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+        }
+
+        /**
+         * @param timeUs time of the call since the recording start. Calls from different threads may come slightly
+         *               out of order, a time earlier than the previous one is recorded as simultaneous.
+         */
+        public void write(long timeUs, int channel, String method, Object arguments) throws IOException {
+            writeVarLong(Math.max(0, timeUs - lastTimeUs));
+            lastTimeUs = Math.max(lastTimeUs, timeUs);
+            out.writeByte(channel);
+            String methodName = (method != null) ? method : "";
+            Integer methodIndex = methods.get(methodName);
+            if (methodIndex != null) {
+                writeVarLong(methodIndex);
+            } else {
+                writeVarLong(methods.size());
+                methods.put(methodName, methods.size());
+                writeString(methodName);
+            }
+            writeValue(arguments);
+        }
+
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(TAG_NULL);
+            } else if (value instanceof Boolean) {
+                out.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+            } else if ((value instanceof Integer) || (value instanceof Short) || (value instanceof Byte)) {
+                out.writeByte(TAG_INT);
+                writeVarLong(zigzag(((Number) value).longValue()));
+            } else if (value instanceof Long) {
+                out.writeByte(TAG_LONG);
+                writeVarLong(zigzag((Long) value));
+            } else if (value instanceof Number) {
+                out.writeByte(TAG_DOUBLE);
+                out.writeDouble(((Number) value).doubleValue());
+            } else if (value instanceof String) {
+                out.writeByte(TAG_STRING);
+                writeString((String) value);
+            } else if (value instanceof byte[]) {
+                byte[] bytes = (byte[]) value;
+                out.writeByte(TAG_BYTES);
+                writeVarLong(bytes.length);
+                out.write(bytes);
+            } else if (value instanceof int[]) {
+                int[] ints = (int[]) value;
+                out.writeByte(TAG_INTS);
+                writeVarLong(ints.length);
+                for (int item : ints) {
+                    writeVarLong(zigzag(item));
+                }
+            } else if (value instanceof long[]) {
+                long[] longs = (long[]) value;
+                out.writeByte(TAG_LONGS);
+                writeVarLong(longs.length);
+                for (long item : longs) {
+                    writeVarLong(zigzag(item));
+                }
+            } else if (value instanceof double[]) {
+                double[] doubles = (double[]) value;
+                out.writeByte(TAG_DOUBLES);
+                writeVarLong(doubles.length);
+                for (double item : doubles) {
+                    out.writeDouble(item);
+                }
+            } else if (value instanceof float[]) {
+                float[] floats = (float[]) value;
+                out.writeByte(TAG_FLOATS);
+                writeVarLong(floats.length);
+                for (float item : floats) {
+                    out.writeFloat(item);
+                }
+            } else if (value instanceof List) {
+                List<?> list = (List<?>) value;
+                out.writeByte(TAG_LIST);
+                writeVarLong(list.size());
+                for (Object item : list) {
+                    writeValue(item);
+                }
+            } else if (value instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                out.writeByte(TAG_MAP);
+                writeVarLong(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeValue(entry.getKey());
+                    writeValue(entry.getValue());
+                }
+            } else {
+                // Not produced by the standard codec, kept readable.
+                out.writeByte(TAG_STRING);
+                writeString(value.toString());
+            }
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(UTF8);
+            writeVarLong(bytes.length);
+            out.write(bytes);
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+
+        private static long zigzag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+
+    public static class Reader implements Closeable {
+        private final DataInputStream in;
+        private final List<String> methods = new ArrayList<>();
+        private long timeUs;
+
+        public Reader(InputStream inputStream) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(inputStream)));
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            for (int index = 0; index < MAGIC.length; index++) {
+                if (magic[index] != MAGIC[index]) {
+                    throw new IOException("Not a channel recording");
+                }
+            }
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported channel recording version " + version);
+            }
+        }
+
+        /**
+         * @return the next call, null at the end of the recording.
+         */
+        public Call read() throws IOException {
+            try {
+                int first = in.read();
+                if (first < 0) {
+                    return null;
+                }
+                timeUs += readVarLong(first);
+                int channel = in.readUnsignedByte();
+                int methodIndex = (int) readVarLong(in.readUnsignedByte());
+                String method;
+                if (methodIndex < methods.size()) {
+                    method = methods.get(methodIndex);
+                } else if (methodIndex == methods.size()) {
+                    method = readString();
+                    methods.add(method);
+                } else {
+                    throw new IOException("Invalid method index " + methodIndex);
+                }
+                return new Call(timeUs, channel, method, readValue());
+            } catch (EOFException e) {
+                // Last record was cut.
+                return null;
+            }
+        }
+
+        /**
+         * Reads all remaining calls.
+         */
+        public List<Call> readAll() throws IOException {
+            List<Call> calls = new ArrayList<>();
+            Call call;
+            while ((call = read()) != null) {
+                calls.add(call);
+            }
+            return calls;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private Object readValue() throws IOException {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case TAG_NULL:
+                    return null;
+                case TAG_TRUE:
+                    return Boolean.TRUE;
+                case TAG_FALSE:
+                    return Boolean.FALSE;
+                case TAG_INT:
+                    return (int) unzigzag(readVarLong());
+                case TAG_LONG:
+                    return unzigzag(readVarLong());
+                case TAG_DOUBLE:
+                    return in.readDouble();
+                case TAG_STRING:
+                    return readString();
+                case TAG_BYTES: {
+                    byte[] bytes = new byte[readLength()];
+                    in.readFully(bytes);
+                    return bytes;
+                }
+                case TAG_INTS: {
+                    int[] ints = new int[readLength()];
+                    for (int index = 0; index < ints.length; index++) {
+                        ints[index] = (int) unzigzag(readVarLong());
+                    }
+                    return ints;
+                }
+                case TAG_LONGS: {
+                    long[] longs = new long[readLength()];
+                    for (int index = 0; index < longs.length; index++) {
+                        longs[index] = unzigzag(readVarLong());
+                    }
+                    return longs;
+                }
+                case TAG_DOUBLES: {
+                    double[] doubles = new double[readLength()];
+                    for (int index = 0; index < doubles.length; index++) {
+                        doubles[index] = in.readDouble();
+                    }
+                    return doubles;
+                }
+                case TAG_FLOATS: {
+                    float[] floats = new float[readLength()];
+                    for (int index = 0; index < floats.length; index++) {
+                        floats[index] = in.readFloat();
+                    }
+                    return floats;
+                }
+                case TAG_LIST: {
+                    int size = readLength();
+                    List<Object> list = new ArrayList<>(size);
+                    for (int index = 0; index < size; index++) {
+                        list.add(readValue());
+                    }
+                    return list;
+                }
+                case TAG_MAP: {
+                    int size = readLength();
+                    Map<Object, Object> map = new HashMap<>();
+                    for (int index = 0; index < size; index++) {
+                        Object key = readValue();
+                        map.put(key, readValue());
+                    }
+                    return map;
+                }
+                default:
+                    throw new IOException("Invalid value tag " + tag);
+            }
+        }
+
+        private String readString() throws IOException {
+            byte[] bytes = new byte[readLength()];
+            in.readFully(bytes);
+            return new String(bytes, UTF8);
+        }
+
+        private int readLength() throws IOException {
+            long length = readVarLong();
+            if ((length < 0) || (length > Integer.MAX_VALUE)) {
+                throw new IOException("Invalid length " + length);
+            }
+            return (int) length;
+        }
+
+        private long readVarLong() throws IOException {
+            return readVarLong(in.readUnsignedByte());
+        }
+
+        private long readVarLong(int first) throws IOException {
+            long value = first & 0x7F;
+            int shift = 7;
+            int current = first;
+            while ((current & 0x80) != 0) {
+                if (shift > 63) {
+                    throw new IOException("Invalid varint");
+                }
+                current = in.readUnsignedByte();
+                value |= (long) (current & 0x7F) << shift;
+                shift += 7;
+            }
+            return value;
+        }
+
+        private static long unzigzag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process wide holder of the config received from Dart, kept across activity recreation.
+ * <p>
+ * The "init" call is versioned by content hashes computed on the Dart side, one per top-level config entry:
+ * <ul>
+ *   <li>"hashes" - hash of every top-level entry, entries missing here are removed;</li>
+ *   <li>"delta" - content of the top-level entries that changed, may be missing or empty;</li>
+ *   <li>"hash" - hash of the whole config;</li>
+ *   <li>"baseHashes" - hashes of the content sent by the last full "config" call, which carries none;</li>
+ *   <li>"config" - full config, replaces everything. Sent on the first sync, when native side holds nothing yet.</li>
+ * </ul>
+ * The reply carries the hash now held and the "stale" entries whose content native side still needs.
+ * Dart sends those in a follow-up call, so unchanged entries never cross the channel.
+ */
+public class ConfigStore {
+
+    private static final ConfigStore instance = new ConfigStore();
+
+    private final Map<String, Object> content = new HashMap<>();
+    private final Map<String, String> contentHashes = new HashMap<>();
+    private String hash;
+
+    public static ConfigStore getInstance() {
+        return instance;
+    }
+
+    private ConfigStore() {
+    }
+
+    @VisibleForTesting
+    synchronized Object getEntry(String key) {
+        return content.get(key);
+    }
+
+    /**
+     * Applies the arguments of the "init" call and returns its reply.
+     */
+    public synchronized Map<String, Object> applyInit(Object params) {
+        String newHash = Utils.Map.getValueFromPath(params, "hash", null);
+        Object fullConfig = (params instanceof Map) ? ((Map<?, ?>) params).get("config") : null;
+        List<String> staleKeys;
+        if (fullConfig instanceof Map) {
+            staleKeys = replaceContent((Map<?, ?>) fullConfig, newHash);
+        } else {
+            Object hashes = (params instanceof Map) ? ((Map<?, ?>) params).get("hashes") : null;
+            Object delta = (params instanceof Map) ? ((Map<?, ?>) params).get("delta") : null;
+            Object baseHashes = (params instanceof Map) ? ((Map<?, ?>) params).get("baseHashes") : null;
+            if (baseHashes instanceof Map) {
+                adoptHashes((Map<?, ?>) baseHashes);
+            }
+            staleKeys = applyDelta((hashes instanceof Map) ? (Map<?, ?>) hashes : null, (delta instanceof Map) ? (Map<?, ?>) delta : null, newHash);
+        }
+
+        Map<String, Object> reply = new HashMap<>();
+        reply.put("hash", hash);
+        reply.put("stale", staleKeys);
+        return reply;
+    }
+
+    private List<String> replaceContent(Map<?, ?> config, String newHash) {
+        content.clear();
+        contentHashes.clear();
+        for (Map.Entry<?, ?> entry : config.entrySet()) {
+            if (entry.getKey() instanceof String) {
+                content.put((String) entry.getKey(), entry.getValue());
+            }
+        }
+        // Per entry hashes come with the next delta call as "baseHashes".
+        hash = newHash;
+        return new ArrayList<>();
+    }
+
+    /**
+     * Matches the content of a full "config" call with the hashes Dart computed for it, so that a later delta only
+     * needs the entries that changed since.
+     */
+    private void adoptHashes(Map<?, ?> baseHashes) {
+        if (contentHashes.isEmpty()) {
+            Iterator<Map.Entry<String, Object>> iterator = content.entrySet().iterator();
+            while (iterator.hasNext()) {
+                String key = iterator.next().getKey();
+                Object keyHash = baseHashes.get(key);
+                if (keyHash instanceof String) {
+                    contentHashes.put(key, (String) keyHash);
+                } else {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private List<String> applyDelta(Map<?, ?> hashes, Map<?, ?> delta, String newHash) {
+        List<String> staleKeys = new ArrayList<>();
+        if (hashes == null) {
+            return staleKeys;
+        }
+        if (contentHashes.isEmpty() && !content.isEmpty()) {
+            // Content came from a full "config" call without base hashes, its entries cannot be matched.
+            content.clear();
+        }
+
+        if (delta != null) {
+            for (Map.Entry<?, ?> entry : delta.entrySet()) {
+                Object key = entry.getKey();
+                Object keyHash = hashes.get(key);
+                if ((key instanceof String) && (keyHash instanceof String)) {
+                    content.put((String) key, entry.getValue());
+                    contentHashes.put((String) key, (String) keyHash);
+                }
+            }
+        }
+
+        Iterator<Map.Entry<String, String>> iterator = contentHashes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            String key = iterator.next().getKey();
+            if (!hashes.containsKey(key)) {
+                iterator.remove();
+                content.remove(key);
+            }
+        }
+        for (Map.Entry<?, ?> entry : hashes.entrySet()) {
+            Object key = entry.getKey();
+            String keyHash = contentHashes.get(key);
+            if ((key instanceof String) && ((keyHash == null) || !keyHash.equals(entry.getValue()))) {
+                staleKeys.add((String) key);
+            }
+        }
+
+        hash = staleKeys.isEmpty() ? newHash : null;
+        return staleKeys;
+    }
+}
@@ -25,6 +25,11 @@ public class Constants {
     static final String APP_ENABLED_ORIENTATIONS_KEY = "enabledOrientations";
     static final String DEEPLINK_SCHEME_KEY = "deepLinkScheme";
     static final String BARCODE_KEY = "barcode";
+    static final String BARCODE_BATCH_KEY = "barcodeBatch";
+    static final String DECODE_BARCODES_KEY = "decodeBarcodes";
+    static final String METRICS_KEY = "metrics";
+    static final String CHANNEL_RECORDING_KEY = "channelRecording";
+    static final String JANK_REPORTS_KEY = "jankReports";
     static final String TEST_KEY = "test";
 
 }
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import android.os.Looper;
+import android.util.Log;
+import android.util.Printer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures every message dispatched by the main looper, through its message logging, and reports the ones that take
+ * longer than a frame. A stall is attributed to the longest native operation that ran within the message: a native
+ * channel call or reply, an orientation callback or a launch status update. Other stalls come from Flutter, plugins or
+ * the framework and are reported as {@link #OPERATION_OTHER} with the message target.
+ * <p>
+ * While sampling is started, a background thread captures the main thread stack of a message running past the frame
+ * budget, so a report tells where the main thread was stuck. Reports are kept in a ring buffer of the last
+ * {@link #MAX_REPORTS} stalls, along with per operation totals.
+ * <p>
+ * Operations are recorded on the main thread only, and so is the report read.
+ * <p>
+ * Off until installed: with message logging set, the looper formats a line for every message, and stack samples pause
+ * the main thread. Debug builds install it at startup, release builds when enabled over the native channel.
+ */
+public class JankWatchdog implements Printer {
+
+    private static final String TAG = "JankWatchdog";
+
+    static final String OPERATION_CHANNEL = "channel";
+    static final String OPERATION_REPLY = "reply";
+    static final String OPERATION_ORIENTATION = "orientation";
+    static final String OPERATION_LAUNCH_STATUS = "launchStatus";
+    static final String OPERATION_OTHER = "other";
+
+    private static final long DEFAULT_FRAME_BUDGET_NS = 16666667L;
+    // Two frames, stalls shorter than that are reported without stack most of the time.
+    private static final long SAMPLE_INTERVAL_MS = 32;
+    private static final int MAX_REPORTS = 32;
+    private static final int MAX_STACK_DEPTH = 24;
+
+    private static final JankWatchdog instance = new JankWatchdog();
+
+    private final Thread mainThread = Looper.getMainLooper().getThread();
+    private volatile long frameBudgetNs = DEFAULT_FRAME_BUDGET_NS;
+
+    // Written by the main thread, read by the sampler.
+    private volatile long dispatchStartTime;
+    private volatile int dispatchSequence;
+    // Written by the sampler, read by the main thread.
+    private volatile StackSample stackSample;
+    private volatile boolean installed;
+    private boolean samplingRequested;
+    private Thread samplerThread;
+
+    // Main thread only.
+    private String dispatchMessage;
+    private String operationKind;
+    private String operationDetail;
+    private long operationDuration;
+    private long messagesCount;
+    private long stallsCount;
+    private final Map<String, OperationStats> operations = new HashMap<>();
+    private final StallReport[] reports = new StallReport[MAX_REPORTS];
+    private int reportsCount;
+    private int nextReportIndex;
+
+    public static JankWatchdog getInstance() {
+        return instance;
+    }
+
+    private JankWatchdog() {
+    }
+
+    /**
+     * Starts measuring the main looper messages, and sampling if requested. Replaces any message logging printer
+     * already set.
+     */
+    synchronized void install() {
+        if (!installed) {
+            installed = true;
+            Looper.getMainLooper().setMessageLogging(this);
+            updateSampler();
+        }
+    }
+
+    /**
+     * Stops measuring and sampling, reports recorded so far are kept.
+     */
+    synchronized void uninstall() {
+        if (installed) {
+            installed = false;
+            Looper.getMainLooper().setMessageLogging(null);
+            dispatchStartTime = 0;
+            updateSampler();
+        }
+    }
+
+    boolean isInstalled() {
+        return installed;
+    }
+
+    void setFrameBudget(long frameBudgetNs) {
+        if (frameBudgetNs > 0) {
+            this.frameBudgetNs = frameBudgetNs;
+        }
+    }
+
+    /**
+     * Captures stacks of stalled messages while installed. Meant to run while the app is in foreground only, the
+     * sampler wakes up every {@link #SAMPLE_INTERVAL_MS}.
+     */
+    synchronized void startSampling() {
+        samplingRequested = true;
+        updateSampler();
+    }
+
+    synchronized void stopSampling() {
+        samplingRequested = false;
+        updateSampler();
+    }
+
+    private void updateSampler() {
+        if (installed && samplingRequested) {
+            if (samplerThread == null) {
+                samplerThread = new Thread(this::runSampler, "jank-watchdog");
+                samplerThread.setDaemon(true);
+                samplerThread.start();
+            }
+        } else if (samplerThread != null) {
+            samplerThread.interrupt();
+            samplerThread = null;
+        }
+    }
+
+    /**
+     * @return the start time to pass to {@link #endOperation}, 0 when not installed.
+     */
+    long beginOperation() {
+        return installed ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records a native operation that ran on the main thread within the current message.
+     *
+     * @param detail method name for channel operations, may be null.
+     */
+    void endOperation(String kind, String detail, long startTime) {
+        if ((startTime == 0) || (dispatchStartTime == 0) || (Thread.currentThread() != mainThread)) {
+            return;
+        }
+        long duration = System.nanoTime() - startTime;
+        if (duration > operationDuration) {
+            operationDuration = duration;
+            operationKind = kind;
+            operationDetail = detail;
+        }
+    }
+
+    /**
+     * Looper message logging: called with a line starting with ">>>>> Dispatching to" before every message and one
+     * starting with "<<<<< Finished to" after it.
+     */
+    @Override
+    public void println(String line) {
+        if ((line == null) || line.isEmpty()) {
+            return;
+        }
+        char first = line.charAt(0);
+        if (first == '>') {
+            dispatchMessage = line;
+            dispatchSequence++;
+            dispatchStartTime = System.nanoTime();
+        } else if ((first == '<') && (dispatchStartTime != 0)) {
+            long duration = System.nanoTime() - dispatchStartTime;
+            messagesCount++;
+            if (duration >= frameBudgetNs) {
+                recordStall(duration);
+            }
+            dispatchStartTime = 0;
+            dispatchMessage = null;
+            operationKind = null;
+            operationDetail = null;
+            operationDuration = 0;
+        }
+    }
+
+    /**
+     * @return stall totals per operation and the latest stall reports, most recent first.
+     */
+    Map<String, Object> getReport(boolean reset) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("enabled", installed);
+        result.put("frameBudgetUs", frameBudgetNs / 1000L);
+        result.put("messages", messagesCount);
+        result.put("stalls", stallsCount);
+        Map<String, Object> operationsResult = new HashMap<>();
+        for (Map.Entry<String, OperationStats> entry : operations.entrySet()) {
+            operationsResult.put(entry.getKey(), entry.getValue().toMap());
+        }
+        result.put("operations", operationsResult);
+        List<Object> reportsResult = new ArrayList<>(reportsCount);
+        for (int index = 1; index <= reportsCount; index++) {
+            reportsResult.add(reports[(nextReportIndex - index + MAX_REPORTS) % MAX_REPORTS].toMap());
+        }
+        result.put("reports", reportsResult);
+        if (reset) {
+            messagesCount = 0;
+            stallsCount = 0;
+            operations.clear();
+            reportsCount = 0;
+            nextReportIndex = 0;
+        }
+        return result;
+    }
+
+    private void recordStall(long duration) {
+        stallsCount++;
+        String operation;
+        if (operationKind != null) {
+            operation = (operationDetail != null) ? (operationKind + ":" + operationDetail) : operationKind;
+        } else {
+            operation = OPERATION_OTHER;
+        }
+        OperationStats stats = operations.get(operation);
+        if (stats == null) {
+            stats = new OperationStats();
+            operations.put(operation, stats);
+        }
+        stats.record(duration);
+
+        StackSample sample = stackSample;
+        List<String> stack = ((sample != null) && (sample.sequence == dispatchSequence)) ? sample.stack : null;
+        reports[nextReportIndex] = new StallReport(System.currentTimeMillis(), duration, operation, operationDuration,
+                dispatchMessage, stack);
+        nextReportIndex = (nextReportIndex + 1) % MAX_REPORTS;
+        reportsCount = Math.min(reportsCount + 1, MAX_REPORTS);
+        Log.w(TAG, String.format("Main thread stalled for %d ms in %s", duration / 1000000L, operation));
+    }
+
+    private void runSampler() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.sleep(SAMPLE_INTERVAL_MS);
+                int sequence = dispatchSequence;
+                long startTime = dispatchStartTime;
+                if ((startTime != 0) && ((System.nanoTime() - startTime) >= frameBudgetNs)) {
+                    StackTraceElement[] stackTrace = mainThread.getStackTrace();
+                    // Dropped if the message finished while the stack was captured.
+                    if ((sequence == dispatchSequence) && (dispatchStartTime == startTime)) {
+                        stackSample = new StackSample(sequence, stackTrace);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // Sampling stopped.
+        }
+    }
+
+    private static class StackSample {
+        final int sequence;
+        final List<String> stack;
+
+        StackSample(int sequence, StackTraceElement[] stackTrace) {
+            this.sequence = sequence;
+            int depth = Math.min(stackTrace.length, MAX_STACK_DEPTH);
+            stack = new ArrayList<>(depth);
+            for (int index = 0; index < depth; index++) {
+                stack.add(stackTrace[index].toString());
+            }
+        }
+    }
+
+    private static class OperationStats {
+        long count;
+        long total;
+        long max;
+
+        void record(long duration) {
+            count++;
+            total += duration;
+            max = Math.max(max, duration);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> result = new HashMap<>();
+            result.put("count", count);
+            result.put("totalUs", total / 1000L);
+            result.put("maxUs", max / 1000L);
+            return result;
+        }
+    }
+
+    private static class StallReport {
+        final long time;
+        final long duration;
+        final String operation;
+        final long operationDuration;
+        final String message;
+        final List<String> stack;
+
+        StallReport(long time, long duration, String operation, long operationDuration, String message, List<String> stack) {
+            this.time = time;
+            this.duration = duration;
+            this.operation = operation;
+            this.operationDuration = operationDuration;
+            this.message = message;
+            this.stack = stack;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> result = new HashMap<>();
+            result.put("time", time);
+            result.put("durationUs", duration / 1000L);
+            result.put("operation", operation);
+            result.put("operationUs", operationDuration / 1000L);
+            result.put("message", message);
+            result.put("stack", stack);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of non negative values, in the spirit of HdrHistogram with fixed memory.
+ * <p>
+ * Values below {@link #SUB_BUCKETS_COUNT} * 2 are counted exactly, larger values go into log2 buckets split into
+ * {@link #SUB_BUCKETS_COUNT} linear sub buckets, so every recorded value is reported within 12.5% of its real value.
+ * Recording is a few bit operations and one atomic increment, safe from any thread.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKETS_BITS = 3;
+    private static final int SUB_BUCKETS_COUNT = 1 << SUB_BUCKETS_BITS;
+    private static final int EXACT_VALUES_COUNT = SUB_BUCKETS_COUNT * 2;
+    private static final int BUCKETS_COUNT = EXACT_VALUES_COUNT + (63 - SUB_BUCKETS_BITS) * SUB_BUCKETS_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalValue = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(getIndex(value));
+        totalCount.incrementAndGet();
+        totalValue.addAndGet(value);
+        long max = maxValue.get();
+        while ((value > max) && !maxValue.compareAndSet(max, value)) {
+            max = maxValue.get();
+        }
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getTotal() {
+        return totalValue.get();
+    }
+
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    public long getMean() {
+        long count = totalCount.get();
+        return (count > 0) ? (totalValue.get() / count) : 0;
+    }
+
+    /**
+     * @param percentile 0 to 100.
+     * @return the upper bound of the bucket holding the percentile, 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        long count = 0;
+        for (int index = 0; index < BUCKETS_COUNT; index++) {
+            count += counts.get(index);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long targetCount = Math.max(1, (long) Math.ceil(count * Math.min(percentile, 100.0) / 100.0));
+        long accumulatedCount = 0;
+        for (int index = 0; index < BUCKETS_COUNT; index++) {
+            accumulatedCount += counts.get(index);
+            if (accumulatedCount >= targetCount) {
+                return Math.min(getUpperBound(index), maxValue.get());
+            }
+        }
+        return maxValue.get();
+    }
+
+    static int getIndex(long value) {
+        if (value < EXACT_VALUES_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKETS_BITS)) & (SUB_BUCKETS_COUNT - 1);
+        return EXACT_VALUES_COUNT + (exponent - SUB_BUCKETS_BITS - 1) * SUB_BUCKETS_COUNT + subBucket;
+    }
+
+    static long getUpperBound(int index) {
+        if (index < EXACT_VALUES_COUNT) {
+            return index;
+        }
+        int exponent = (index - EXACT_VALUES_COUNT) / SUB_BUCKETS_COUNT + SUB_BUCKETS_BITS + 1;
+        int subBucket = (index - EXACT_VALUES_COUNT) % SUB_BUCKETS_COUNT;
+        long lowerBound = (1L << exponent) + ((long) subBucket << (exponent - SUB_BUCKETS_BITS));
+        return lowerBound + (1L << (exponent - SUB_BUCKETS_BITS)) - 1;
+    }
+}
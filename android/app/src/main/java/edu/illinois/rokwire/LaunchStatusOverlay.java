@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import android.app.Activity;
+import android.graphics.Color;
+import android.text.TextUtils;
+import android.view.Choreographer;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+/**
+ * Single line text shown over the bottom of the activity while Dart services initialize.
+ * <p>
+ * The same view is updated in place. Status changes arriving faster than the display refresh rate are coalesced,
+ * only the latest one is shown on the next frame. Must be used on the main thread.
+ */
+public class LaunchStatusOverlay implements Choreographer.FrameCallback {
+
+    private static final int BACKGROUND_COLOR = 0xB0000000;
+    private static final int PADDING_DP = 8;
+    private static final int MARGIN_DP = 48;
+
+    private final Activity activity;
+    private TextView statusView;
+    private String status;
+    private boolean framePending;
+
+    LaunchStatusOverlay(Activity activity) {
+        this.activity = activity;
+    }
+
+    void setStatus(String status) {
+        this.status = status;
+        if (!framePending) {
+            framePending = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    void release() {
+        if (framePending) {
+            Choreographer.getInstance().removeFrameCallback(this);
+            framePending = false;
+        }
+        if (statusView != null) {
+            ViewGroup parent = (ViewGroup) statusView.getParent();
+            if (parent != null) {
+                parent.removeView(statusView);
+            }
+            statusView = null;
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        long startTime = JankWatchdog.getInstance().beginOperation();
+        framePending = false;
+        if (status != null) {
+            if (statusView == null) {
+                statusView = createStatusView();
+            }
+            statusView.setText(status);
+            statusView.setVisibility(View.VISIBLE);
+        } else if (statusView != null) {
+            statusView.setVisibility(View.GONE);
+        }
+        JankWatchdog.getInstance().endOperation(JankWatchdog.OPERATION_LAUNCH_STATUS, null, startTime);
+    }
+
+    private TextView createStatusView() {
+        float density = activity.getResources().getDisplayMetrics().density;
+        int padding = Math.round(PADDING_DP * density);
+        TextView textView = new TextView(activity);
+        textView.setTextColor(Color.WHITE);
+        textView.setBackgroundColor(BACKGROUND_COLOR);
+        textView.setPadding(padding, padding, padding, padding);
+        textView.setSingleLine(true);
+        textView.setEllipsize(TextUtils.TruncateAt.END);
+
+        FrameLayout.LayoutParams layoutParams = new FrameLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT, Gravity.BOTTOM | Gravity.CENTER_HORIZONTAL);
+        layoutParams.bottomMargin = Math.round(MARGIN_DP * density);
+        activity.addContentView(textView, layoutParams);
+        return textView;
+    }
+}
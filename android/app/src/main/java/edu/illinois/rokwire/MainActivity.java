@@ -17,54 +17,88 @@
 package edu.illinois.rokwire;
 
 import android.content.pm.ActivityInfo;
-import android.graphics.Bitmap;
+import android.database.ContentObserver;
 import android.hardware.SensorManager;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.provider.Settings;
-import android.util.Base64;
 import android.util.Log;
+import android.view.Display;
 import android.view.OrientationEventListener;
-import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.MultiFormatWriter;
-import com.google.zxing.common.BitMatrix;
-
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 import io.flutter.embedding.android.FlutterActivity;
 import io.flutter.embedding.engine.FlutterEngine;
-import io.flutter.plugin.common.MethodCall;
-import io.flutter.plugin.common.MethodChannel;
+import io.flutter.embedding.engine.FlutterEngineCache;
 
-public class MainActivity extends FlutterActivity implements MethodChannel.MethodCallHandler {
+public class MainActivity extends FlutterActivity implements AppNativeHandlers.ActivityHost {
 
     private static final String TAG = "MainActivity";
 
-    private static MethodChannel METHOD_CHANNEL;
-    private static final String NATIVE_CHANNEL = "edu.illinois.rokwire/native_call";
-
-    private HashMap config;
+    private static final String METRICS_FILE_NAME = "channel_metrics.txt";
+
+    // Screen orientations Dart can enable and their names on Dart side, in the same order.
+    private static final int[] SCREEN_ORIENTATIONS = {
+            ActivityInfo.SCREEN_ORIENTATION_PORTRAIT,
+            ActivityInfo.SCREEN_ORIENTATION_REVERSE_PORTRAIT,
+            ActivityInfo.SCREEN_ORIENTATION_REVERSE_LANDSCAPE,
+            ActivityInfo.SCREEN_ORIENTATION_LANDSCAPE,
+    };
+    private static final String[] SCREEN_ORIENTATION_NAMES = {
+            "portraitUp",
+            "portraitDown",
+            "landscapeLeft",
+            "landscapeRight",
+    };
+
+    private static final long ORIENTATION_DEBOUNCE_MS = 300;
+    private static final int ORIENTATION_HYSTERESIS_DEGREES = 15;
 
     private int preferredScreenOrientation;
-    private Set<Integer> supportedScreenOrientations;
+    private int supportedScreenOrientationsMask;
+    private List<String> enabledOrientationsList;
     private OrientationEventListener orientationListener;
+    private boolean orientationListenerEnabled;
+    private ContentObserver autoRotateObserver;
+    private boolean autoRotateEnabled;
+    private int pendingOrientation = ActivityInfo.SCREEN_ORIENTATION_UNSPECIFIED;
+    private final Handler orientationHandler = new Handler(Looper.getMainLooper());
+    private final Runnable pendingOrientationRunnable = this::applyPendingOrientation;
+    private boolean resumed;
 
-    private Toast statusToast;
+    private LaunchStatusOverlay launchStatusOverlay;
+
+    private final StartupScheduler startupScheduler = new StartupScheduler();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        // Before FlutterActivity looks the cached engine up, the process may have started without warming it up.
+        ((App) getApplication()).warmUpFlutterEngine();
         super.onCreate(savedInstanceState);
 
-        initScreenOrientation();
+        float refreshRate = getRefreshRate();
+        if (refreshRate > 0) {
+            JankWatchdog.getInstance().setFrameBudget((long) (1000000000L / refreshRate));
+        }
+
+        startupScheduler.schedule("screenOrientation", StartupScheduler.PRIORITY_CRITICAL, this::initScreenOrientation);
+        startupScheduler.schedule("launchStatusOverlay", StartupScheduler.PRIORITY_CRITICAL, () -> {
+            launchStatusOverlay = new LaunchStatusOverlay(this);
+            ((App) getApplication()).attachLaunchStatusOverlay(launchStatusOverlay);
+        });
+        // Delivers the calls Dart made on the pre-warmed engine before this activity existed.
+        startupScheduler.schedule("nativeHandlers", StartupScheduler.PRIORITY_CRITICAL, () -> ((App) getApplication()).attachActivity(this));
+        startupScheduler.schedule("orientationListener", StartupScheduler.PRIORITY_AFTER_FIRST_FRAME, this::initOrientationListener);
     }
 
     @Override
@@ -72,13 +106,37 @@ public class MainActivity extends FlutterActivity implements MethodChannel.Metho
         super.onStart();
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        resumed = true;
+        updateOrientationListener();
+        JankWatchdog.getInstance().startSampling();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        resumed = false;
+        updateOrientationListener();
+        cancelPendingOrientation();
+        JankWatchdog.getInstance().stopSampling();
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
 
-        if (orientationListener != null) {
-            orientationListener.disable();
+        startupScheduler.cancel();
+
+        if (launchStatusOverlay != null) {
+            ((App) getApplication()).detachLaunchStatusOverlay(launchStatusOverlay);
+            launchStatusOverlay.release();
         }
+
+        resumed = false;
+        updateOrientationListener();
+        cancelPendingOrientation();
     }
 
     @Override
@@ -88,78 +146,155 @@ public class MainActivity extends FlutterActivity implements MethodChannel.Metho
 
     @Override
     public void configureFlutterEngine(@NonNull FlutterEngine flutterEngine) {
-        super.configureFlutterEngine(flutterEngine);
-        METHOD_CHANNEL = new MethodChannel(flutterEngine.getDartExecutor().getBinaryMessenger(), NATIVE_CHANNEL);
-        METHOD_CHANNEL.setMethodCallHandler(this);
+        startupScheduler.schedule("plugins", StartupScheduler.PRIORITY_CRITICAL, () -> super.configureFlutterEngine(flutterEngine));
+        startupScheduler.schedule("methodChannel", StartupScheduler.PRIORITY_CRITICAL, () -> {
+            App app = (App) getApplication();
+            if (!app.isCachedEngine(flutterEngine)) {
+                app.attachNativeChannel(flutterEngine);
+            } else if (app.getPluginLoader() != null) {
+                app.getPluginLoader().scheduleDeferredPlugins(startupScheduler);
+            }
+        });
+    }
+
+    @Override
+    public void cleanUpFlutterEngine(@NonNull FlutterEngine flutterEngine) {
+        App app = (App) getApplication();
+        app.detachActivity(this);
+        // Buffered messages must not wait for a next activity that may never come. An activity recreated for a
+        // configuration change schedules the deferred plugins again instead.
+        if (app.isCachedEngine(flutterEngine) && (app.getPluginLoader() != null) && !isChangingConfigurations()) {
+            app.getPluginLoader().attachDeferredPlugins();
+        }
+        super.cleanUpFlutterEngine(flutterEngine);
+    }
+
+    @Override
+    public String getCachedEngineId() {
+        // Null if the engine warm up failed, FlutterActivity then creates an engine of its own.
+        return FlutterEngineCache.getInstance().contains(App.FLUTTER_ENGINE_ID) ? App.FLUTTER_ENGINE_ID : null;
+    }
+
+    @Override
+    public boolean shouldDestroyEngineWithHost() {
+        return (getCachedEngineId() == null);
+    }
+
+    @Override
+    public void onFlutterUiDisplayed() {
+        super.onFlutterUiDisplayed();
+        startupScheduler.onFirstFrame();
+    }
+
+    @SuppressWarnings("deprecation")
+    private float getRefreshRate() {
+        Display display = (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) ? getDisplay() : getWindowManager().getDefaultDisplay();
+        return (display != null) ? display.getRefreshRate() : 0;
     }
 
     private void initScreenOrientation() {
         preferredScreenOrientation = ActivityInfo.SCREEN_ORIENTATION_PORTRAIT;
-        supportedScreenOrientations =new HashSet<>(Arrays.asList(
-                preferredScreenOrientation,
-                ActivityInfo.SCREEN_ORIENTATION_LANDSCAPE //Enable Landscape support
-        ));
+        supportedScreenOrientationsMask = getScreenOrientationBit(preferredScreenOrientation) |
+                getScreenOrientationBit(ActivityInfo.SCREEN_ORIENTATION_LANDSCAPE); //Enable Landscape support
         setRequestedOrientation(preferredScreenOrientation);
-        initOrientationListener();
     }
 
     private void initOrientationListener() {
         orientationListener = new OrientationEventListener(this, SensorManager.SENSOR_DELAY_NORMAL) {
             @Override
             public void onOrientationChanged(int orientation) {
-                if (isAutoRotateEnabled()) {
+                if (autoRotateEnabled && (orientation != OrientationEventListener.ORIENTATION_UNKNOWN)) {
+                    long startTime = JankWatchdog.getInstance().beginOperation();
                     checkOrientationChange(orientation);
+                    JankWatchdog.getInstance().endOperation(JankWatchdog.OPERATION_ORIENTATION, null, startTime);
                 }
             }
         };
+        autoRotateObserver = new ContentObserver(new Handler(Looper.getMainLooper())) {
+            @Override
+            public void onChange(boolean selfChange) {
+                autoRotateEnabled = isAutoRotateEnabled();
+                if (!autoRotateEnabled) {
+                    cancelPendingOrientation();
+                }
+            }
+        };
+        updateOrientationListener();
+    }
 
-        if (orientationListener.canDetectOrientation()) {
+    /**
+     * Keeps the sensor listener running only while the activity is resumed and more than one orientation is supported.
+     */
+    private void updateOrientationListener() {
+        if (orientationListener == null) {
+            return;
+        }
+        boolean enable = resumed && (Integer.bitCount(supportedScreenOrientationsMask) > 1) &&
+                orientationListener.canDetectOrientation();
+        if (enable && !orientationListenerEnabled) {
+            // Settings are read once here and then kept up to date by the observer, not on every sensor event.
+            autoRotateEnabled = isAutoRotateEnabled();
+            getContentResolver().registerContentObserver(Settings.System.getUriFor(Settings.System.ACCELEROMETER_ROTATION), false, autoRotateObserver);
+            cancelPendingOrientation();
             orientationListener.enable();
-        } else {
+            orientationListenerEnabled = true;
+        } else if (!enable && orientationListenerEnabled) {
             orientationListener.disable();
+            cancelPendingOrientation();
+            getContentResolver().unregisterContentObserver(autoRotateObserver);
+            orientationListenerEnabled = false;
         }
     }
 
     private void checkOrientationChange(int orientationDegrees) {
-        int desiredOrientation = getScreenOrientationFromDegrees(orientationDegrees);
         int currentOrientation = getRequestedOrientation();
+        int desiredOrientation = getScreenOrientationFromDegrees(orientationDegrees, currentOrientation);
+
+        if (desiredOrientation == currentOrientation) {
+            cancelPendingOrientation();
+            return;
+        }
+
+        // Apply the new orientation only once the device has been held that way for a while, whether or not the
+        // sensor reports again in between. Turning to yet another orientation restarts the wait.
+        if (desiredOrientation != pendingOrientation) {
+            cancelPendingOrientation();
+            pendingOrientation = desiredOrientation;
+            orientationHandler.postDelayed(pendingOrientationRunnable, ORIENTATION_DEBOUNCE_MS);
+        }
+    }
 
+    private void applyPendingOrientation() {
+        int orientation = pendingOrientation;
+        pendingOrientation = ActivityInfo.SCREEN_ORIENTATION_UNSPECIFIED;
         // Prevent changing screen orientation if it's not supported
-        if (desiredOrientation != currentOrientation) {
-            if (supportedScreenOrientations.contains(desiredOrientation)) {
-                setRequestedOrientation(desiredOrientation);
-            }
+        if ((orientation != ActivityInfo.SCREEN_ORIENTATION_UNSPECIFIED) && isScreenOrientationSupported(orientation)) {
+            long startTime = JankWatchdog.getInstance().beginOperation();
+            setRequestedOrientation(orientation);
+            JankWatchdog.getInstance().endOperation(JankWatchdog.OPERATION_ORIENTATION, null, startTime);
         }
     }
 
-    private boolean isAutoRotateEnabled() {
-        return (Settings.System.getInt(getContentResolver(), Settings.System.ACCELEROMETER_ROTATION, 0) == 1);
+    private void cancelPendingOrientation() {
+        orientationHandler.removeCallbacks(pendingOrientationRunnable);
+        pendingOrientation = ActivityInfo.SCREEN_ORIENTATION_UNSPECIFIED;
     }
 
-    private void initWithParams(Object configObj) {
-        this.config = (configObj instanceof HashMap) ? ((HashMap)configObj) : null;
+    private boolean isAutoRotateEnabled() {
+        return (Settings.System.getInt(getContentResolver(), Settings.System.ACCELEROMETER_ROTATION, 0) == 1);
     }
 
-    private List<String> handleEnabledOrientations(Object orientations) {
-        List<String> resultList = new ArrayList<>();
-        if (preferredScreenOrientation != ActivityInfo.SCREEN_ORIENTATION_UNSPECIFIED) {
-            resultList.add(getScreenOrientationToString(preferredScreenOrientation));
-        }
-        if (supportedScreenOrientations != null && !supportedScreenOrientations.isEmpty()) {
-            for (int supportedOrientation : supportedScreenOrientations) {
-                if (supportedOrientation != preferredScreenOrientation) {
-                    resultList.add(getScreenOrientationToString(supportedOrientation));
-                }
-            }
-        }
+    @Override
+    public List<String> handleEnabledOrientations(Object orientations) {
+        List<String> resultList = getEnabledOrientationsList();
         List<String> orientationsList = Utils.List.stringList(orientations);
         if (orientationsList != null) {
             int preferredOrientation = ActivityInfo.SCREEN_ORIENTATION_UNSPECIFIED;
-            Set<Integer> supportedOrientations = new HashSet<>();
+            int supportedOrientationsMask = 0;
             for (String orientationString : orientationsList) {
                 int orientation = getScreenOrientationFromString(orientationString);
                 if (orientation != ActivityInfo.SCREEN_ORIENTATION_UNSPECIFIED) {
-                    supportedOrientations.add(orientation);
+                    supportedOrientationsMask |= getScreenOrientationBit(orientation);
                     if (preferredOrientation == ActivityInfo.SCREEN_ORIENTATION_UNSPECIFIED) {
                         preferredOrientation = orientation;
                     }
@@ -167,240 +302,126 @@ public class MainActivity extends FlutterActivity implements MethodChannel.Metho
             }
             if ((preferredOrientation != ActivityInfo.SCREEN_ORIENTATION_UNSPECIFIED) && (preferredScreenOrientation != preferredOrientation)) {
                 preferredScreenOrientation = preferredOrientation;
+                enabledOrientationsList = null;
             }
-            if (!supportedOrientations.isEmpty() && !supportedOrientations.equals(supportedScreenOrientations)) {
-                supportedScreenOrientations = supportedOrientations;
+            if ((supportedOrientationsMask != 0) && (supportedOrientationsMask != supportedScreenOrientationsMask)) {
+                supportedScreenOrientationsMask = supportedOrientationsMask;
+                enabledOrientationsList = null;
                 int currentOrientation = getRequestedOrientation();
-                if (!supportedScreenOrientations.contains(currentOrientation)) {
+                if (!isScreenOrientationSupported(currentOrientation)) {
                     setRequestedOrientation(preferredScreenOrientation);
                 }
+                updateOrientationListener();
             }
         }
         return resultList;
     }
 
-    private String getScreenOrientationToString(int orientationValue) {
-        switch (orientationValue) {
-            case ActivityInfo.SCREEN_ORIENTATION_PORTRAIT -> {
-                return "portraitUp";
-            }
-            case ActivityInfo.SCREEN_ORIENTATION_REVERSE_PORTRAIT -> {
-                return "portraitDown";
-            }
-            case ActivityInfo.SCREEN_ORIENTATION_REVERSE_LANDSCAPE -> {
-                return "landscapeLeft";
-            }
-            case ActivityInfo.SCREEN_ORIENTATION_LANDSCAPE -> {
-                return "landscapeRight";
+    /**
+     * @return the preferred orientation followed by the other supported ones, rebuilt only after they change.
+     */
+    private List<String> getEnabledOrientationsList() {
+        if (enabledOrientationsList == null) {
+            List<String> resultList = new ArrayList<>(SCREEN_ORIENTATIONS.length);
+            if (preferredScreenOrientation != ActivityInfo.SCREEN_ORIENTATION_UNSPECIFIED) {
+                resultList.add(getScreenOrientationToString(preferredScreenOrientation));
             }
-            default -> {
-                return null;
+            for (int orientation = 0; orientation < Integer.SIZE; orientation++) {
+                if (((supportedScreenOrientationsMask & (1 << orientation)) != 0) && (orientation != preferredScreenOrientation)) {
+                    resultList.add(getScreenOrientationToString(orientation));
+                }
             }
+            enabledOrientationsList = Collections.unmodifiableList(resultList);
         }
+        return enabledOrientationsList;
     }
 
-    private int getScreenOrientationFromString(String orientationString) {
-        if (Utils.Str.isEmpty(orientationString)) {
-            return ActivityInfo.SCREEN_ORIENTATION_UNSPECIFIED;
-        }
-        switch (orientationString) {
-            case "portraitUp" -> {
-                return ActivityInfo.SCREEN_ORIENTATION_PORTRAIT;
-            }
-            case "portraitDown" -> {
-                return ActivityInfo.SCREEN_ORIENTATION_REVERSE_PORTRAIT;
-            }
-            case "landscapeLeft" -> {
-                return ActivityInfo.SCREEN_ORIENTATION_REVERSE_LANDSCAPE;
-            }
-            case "landscapeRight" -> {
-                return ActivityInfo.SCREEN_ORIENTATION_LANDSCAPE;
-            }
-            default -> {
-                return ActivityInfo.SCREEN_ORIENTATION_UNSPECIFIED;
-            }
-        }
+    private boolean isScreenOrientationSupported(int orientation) {
+        return (supportedScreenOrientationsMask & getScreenOrientationBit(orientation)) != 0;
     }
 
-    private int getScreenOrientationFromDegrees(int orientationDegrees) {
-        if ((orientationDegrees > 315) || (orientationDegrees <= 45)) {
-            return ActivityInfo.SCREEN_ORIENTATION_PORTRAIT;
-        } else if (orientationDegrees <= 135) {
-            return ActivityInfo.SCREEN_ORIENTATION_REVERSE_LANDSCAPE;
-        } else if (orientationDegrees <= 225) {
-            return ActivityInfo.SCREEN_ORIENTATION_REVERSE_PORTRAIT;
-        } else { // (orientationDegrees > 225) && (orientationDegrees <= 315)
-            return ActivityInfo.SCREEN_ORIENTATION_LANDSCAPE;
-        }
+    private static int getScreenOrientationBit(int orientation) {
+        return ((orientation >= 0) && (orientation < Integer.SIZE)) ? (1 << orientation) : 0;
     }
 
-    
-    private String handleDeepLinkScheme(Object params) {
-        return getString(R.string.app_scheme);
-    }
-
-    private String handleBarcode(Object params) {
-        String barcodeImageData = null;
-        String content = Utils.Map.getValueFromPath(params, "content", null);
-        String format = Utils.Map.getValueFromPath(params, "format", null);
-        int width = Utils.Map.getValueFromPath(params, "width", 0);
-        int height = Utils.Map.getValueFromPath(params, "height", 0);
-        BarcodeFormat barcodeFormat = null;
-        if (!Utils.Str.isEmpty(format)) {
-            switch (format) {
-                case "aztec":
-                    barcodeFormat = BarcodeFormat.AZTEC;
-                    break;
-                case "codabar":
-                    barcodeFormat = BarcodeFormat.CODABAR;
-                    break;
-                case "code39":
-                    barcodeFormat = BarcodeFormat.CODE_39;
-                    break;
-                case "code93":
-                    barcodeFormat = BarcodeFormat.CODE_93;
-                    break;
-                case "code128":
-                    barcodeFormat = BarcodeFormat.CODE_128;
-                    break;
-                case "dataMatrix":
-                    barcodeFormat = BarcodeFormat.DATA_MATRIX;
-                    break;
-                case "ean8":
-                    barcodeFormat = BarcodeFormat.EAN_8;
-                    break;
-                case "ean13":
-                    barcodeFormat = BarcodeFormat.EAN_13;
-                    break;
-                case "itf":
-                    barcodeFormat = BarcodeFormat.ITF;
-                    break;
-                case "maxiCode":
-                    barcodeFormat = BarcodeFormat.MAXICODE;
-                    break;
-                case "pdf417":
-                    barcodeFormat = BarcodeFormat.PDF_417;
-                    break;
-                case "qrCode":
-                    barcodeFormat = BarcodeFormat.QR_CODE;
-                    break;
-                case "rss14":
-                    barcodeFormat = BarcodeFormat.RSS_14;
-                    break;
-                case "rssExpanded":
-                    barcodeFormat = BarcodeFormat.RSS_EXPANDED;
-                    break;
-                case "upca":
-                    barcodeFormat = BarcodeFormat.UPC_A;
-                    break;
-                case "upce":
-                    barcodeFormat = BarcodeFormat.UPC_E;
-                    break;
-                case "upceanExtension":
-                    barcodeFormat = BarcodeFormat.UPC_EAN_EXTENSION;
-                    break;
-                default:
-                    break;
+    private String getScreenOrientationToString(int orientationValue) {
+        for (int index = 0; index < SCREEN_ORIENTATIONS.length; index++) {
+            if (SCREEN_ORIENTATIONS[index] == orientationValue) {
+                return SCREEN_ORIENTATION_NAMES[index];
             }
         }
+        return null;
+    }
 
-        if (Utils.Str.isNotEmpty(content) && (barcodeFormat != null) && (0 < width) && (0 < height)) {
-            try {
-                MultiFormatWriter multiFormatWriter = new MultiFormatWriter();
-                BitMatrix bitMatrix = multiFormatWriter.encode(content, barcodeFormat, width, height);
-                Bitmap bitmap = (bitMatrix != null) ? createBitmap(bitMatrix) : null;
-                if (bitmap != null) {
-                    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-                    bitmap.compress(Bitmap.CompressFormat.PNG, 100, byteArrayOutputStream);
-                    byte[] byteArray = byteArrayOutputStream.toByteArray();
-                    barcodeImageData = Base64.encodeToString(byteArray, Base64.NO_WRAP);
+    private int getScreenOrientationFromString(String orientationString) {
+        if (!Utils.Str.isEmpty(orientationString)) {
+            for (int index = 0; index < SCREEN_ORIENTATION_NAMES.length; index++) {
+                if (SCREEN_ORIENTATION_NAMES[index].equals(orientationString)) {
+                    return SCREEN_ORIENTATIONS[index];
                 }
-            } catch (Exception e) {
-                Log.e(TAG, "Failed to encode image: " + e);
             }
         }
-        return barcodeImageData;
+        return ActivityInfo.SCREEN_ORIENTATION_UNSPECIFIED;
     }
 
-    private Bitmap createBitmap(BitMatrix matrix) {
-        if (matrix == null) {
-            return null;
-        }
-        final int WHITE = 0xFFFFFFFF;
-        final int BLACK = 0xFF000000;
-        int width = matrix.getWidth();
-        int height = matrix.getHeight();
-        int[] pixels = new int[width * height];
-        // All are 0, or black, by default
-        for (int y = 0; y < height; y++) {
-            int offset = y * width;
-            for (int x = 0; x < width; x++) {
-                pixels[offset + x] = matrix.get(x, y) ? BLACK : WHITE;
+    /**
+     * Keeps the current orientation until the device is turned {@link #ORIENTATION_HYSTERESIS_DEGREES} past the boundary
+     * between two orientations, so holding the device close to 45 degrees does not flip the screen back and forth.
+     */
+    private int getScreenOrientationFromDegrees(int orientationDegrees, int currentOrientation) {
+        int currentDegrees = getScreenOrientationDegrees(currentOrientation);
+        if (currentDegrees >= 0) {
+            int distance = Math.abs(orientationDegrees - currentDegrees) % 360;
+            if (Math.min(distance, 360 - distance) <= (45 + ORIENTATION_HYSTERESIS_DEGREES)) {
+                return currentOrientation;
             }
         }
-
-        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-        bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
-        return bitmap;
+        return getScreenOrientationFromDegrees(orientationDegrees);
     }
 
-    private void handleSetLaunchScreenStatus(Object params) {
-        String statusText = Utils.Map.getValueFromPath(params, "status", null);
-
-        if (statusToast != null) {
-            statusToast.cancel();
-            statusToast = null;
+    private int getScreenOrientationDegrees(int orientation) {
+        switch (orientation) {
+            case ActivityInfo.SCREEN_ORIENTATION_PORTRAIT: return 0;
+            case ActivityInfo.SCREEN_ORIENTATION_REVERSE_LANDSCAPE: return 90;
+            case ActivityInfo.SCREEN_ORIENTATION_REVERSE_PORTRAIT: return 180;
+            case ActivityInfo.SCREEN_ORIENTATION_LANDSCAPE: return 270;
+            default: return -1;
         }
-        if (statusText != null) {
-            statusToast = Toast.makeText(this, statusText, Toast.LENGTH_SHORT);
-            statusToast.show();
+    }
+
+    private int getScreenOrientationFromDegrees(int orientationDegrees) {
+        if ((orientationDegrees > 315) || (orientationDegrees <= 45)) {
+            return ActivityInfo.SCREEN_ORIENTATION_PORTRAIT;
+        } else if (orientationDegrees <= 135) {
+            return ActivityInfo.SCREEN_ORIENTATION_REVERSE_LANDSCAPE;
+        } else if (orientationDegrees <= 225) {
+            return ActivityInfo.SCREEN_ORIENTATION_REVERSE_PORTRAIT;
+        } else { // (orientationDegrees > 225) && (orientationDegrees <= 315)
+            return ActivityInfo.SCREEN_ORIENTATION_LANDSCAPE;
         }
     }
 
-    /**
-     * Overrides {@link io.flutter.plugin.common.MethodChannel.MethodCallHandler} onMethodCall()
-     */
-    @Override
-    public void onMethodCall(MethodCall methodCall, @NonNull MethodChannel.Result result) {
-        String method = methodCall.method;
-        try {
-            switch (method) {
-                case Constants.APP_INIT_KEY:
-                    Object configObject = methodCall.argument("config");
-                    initWithParams(configObject);
-                    result.success(true);
-                    break;
-                case Constants.APP_DISMISS_LAUNCH_SCREEN_KEY:
-                    result.success(false);
-                    break;
-                case Constants.APP_SET_LAUNCH_SCREEN_STATUS_KEY:
-                    handleSetLaunchScreenStatus(methodCall.arguments);
-                    result.success(true);
-                    break;
-                case Constants.APP_ENABLED_ORIENTATIONS_KEY:
-                    Object orientations = methodCall.argument("orientations");
-                    List<String> orientationsList = handleEnabledOrientations(orientations);
-                    result.success(orientationsList);
-                    break;
-                case Constants.BARCODE_KEY:
-                    String barcodeImageData = handleBarcode(methodCall.arguments);
-                    result.success(barcodeImageData);
-                    break;
-                case Constants.DEEPLINK_SCHEME_KEY:
-                    String deepLinkScheme = handleDeepLinkScheme(methodCall.arguments);
-                    result.success(deepLinkScheme);
-                    break;
-                case Constants.TEST_KEY:
-                    result.success(false);
-                    break;
-                default:
-                    result.notImplemented();
-                    break;
 
+    @Override
+    public Map<String, Object> handleMetrics(Object params) {
+        ChannelMetrics channelMetrics = ((App) getApplication()).getChannelMetrics();
+        // Reset takes the metrics it starts over from, no call falls between reading and resetting.
+        Map<String, Object> methods = Utils.Map.getValueFromPath(params, "reset", false) ? channelMetrics.reset() : channelMetrics.toMap();
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("methods", methods);
+        metrics.put("barcodeCache", ((App) getApplication()).getBarcodeRenderer().getCacheStats());
+        metrics.put("startup", startupScheduler.getTimings());
+        metrics.put("replies", AsyncResult.getStats());
+
+        String dump = Utils.Map.getValueFromPath(params, "dump", null);
+        if ("log".equals(dump)) {
+            ChannelMetrics.dumpToLog(methods);
+        } else if ("file".equals(dump)) {
+            File metricsFile = new File(getFilesDir(), METRICS_FILE_NAME);
+            if (ChannelMetrics.dumpToFile(methods, metricsFile)) {
+                metrics.put("file", metricsFile.getAbsolutePath());
             }
-        } catch (IllegalStateException exception) {
-            String errorMsg = String.format("Ignoring exception '%s'. See https://github.com/flutter/flutter/issues/29092 for details.", exception);
-            Log.e(TAG, errorMsg);
         }
+        return metrics;
     }
 }
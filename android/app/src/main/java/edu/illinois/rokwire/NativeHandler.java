@@ -0,0 +1,40 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * Handler of a single native channel method, registered in {@link NativeHandlerRegistry}.
+ * The handler declares the thread it runs on, the registry takes care of getting it there.
+ */
+public interface NativeHandler extends MethodChannel.MethodCallHandler {
+
+    enum Policy {
+        /** On the main thread, for handlers that touch the activity or views. */
+        MAIN,
+        /** On a single background thread, one call at a time in the order they came. */
+        SERIAL,
+        /**
+         * On the thread the call arrives on, for handlers that only hand the call over to a pool of their own:
+         * inline on the main thread for the main channel, on the task queue for the background channel.
+         */
+        CALLER,
+    }
+
+    Policy getPolicy();
+}
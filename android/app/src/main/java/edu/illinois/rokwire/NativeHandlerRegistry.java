@@ -0,0 +1,113 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * Maps native channel methods to their {@link NativeHandler} and runs each call on the executor of the handler policy.
+ * <p>
+ * Lookup is a single hash map access, handlers may be registered and unregistered from any thread. The executors are
+ * given by the owner, so the registry has no Android dependency and handlers can be driven by plain Java executors.
+ */
+public class NativeHandlerRegistry {
+
+    public static final String BUSY_ERROR_CODE = "busy";
+    public static final String EXCEPTION_ERROR_CODE = "exception";
+
+    private final ConcurrentHashMap<String, NativeHandler> handlers = new ConcurrentHashMap<>();
+    private final Executor[] executors = new Executor[NativeHandler.Policy.values().length];
+
+    NativeHandlerRegistry(@NonNull Executor mainExecutor, @NonNull Executor serialExecutor) {
+        executors[NativeHandler.Policy.MAIN.ordinal()] = mainExecutor;
+        executors[NativeHandler.Policy.SERIAL.ordinal()] = serialExecutor;
+        executors[NativeHandler.Policy.CALLER.ordinal()] = Runnable::run;
+    }
+
+    /**
+     * Replaces the handler already registered for method, if any.
+     */
+    void register(@NonNull String method, @NonNull NativeHandler handler) {
+        handlers.put(method, handler);
+    }
+
+    void register(@NonNull String method, @NonNull NativeHandler.Policy policy, @NonNull MethodChannel.MethodCallHandler handler) {
+        register(method, new PolicyHandler(policy, handler));
+    }
+
+    void unregister(@NonNull String method) {
+        handlers.remove(method);
+    }
+
+    boolean isRegistered(String method) {
+        return (method != null) && handlers.containsKey(method);
+    }
+
+    /**
+     * Handlers that throw reply with an {@link #EXCEPTION_ERROR_CODE} error, calls their executor cannot take with a
+     * {@link #BUSY_ERROR_CODE} one.
+     *
+     * @return false if no handler is registered for the method, result is left to the caller then.
+     */
+    boolean dispatch(@NonNull MethodCall methodCall, @NonNull MethodChannel.Result result) {
+        NativeHandler handler = (methodCall.method != null) ? handlers.get(methodCall.method) : null;
+        if (handler == null) {
+            return false;
+        }
+        try {
+            executors[handler.getPolicy().ordinal()].execute(() -> invoke(handler, methodCall, result));
+        } catch (RejectedExecutionException e) {
+            result.error(BUSY_ERROR_CODE, String.format("'%s' rejected, handler queue is full", methodCall.method), null);
+        }
+        return true;
+    }
+
+    private static void invoke(NativeHandler handler, MethodCall methodCall, MethodChannel.Result result) {
+        try {
+            handler.onMethodCall(methodCall, result);
+        } catch (RuntimeException e) {
+            result.error(EXCEPTION_ERROR_CODE, String.format("'%s' failed: %s", methodCall.method, e), null);
+        }
+    }
+
+    private static class PolicyHandler implements NativeHandler {
+        private final Policy policy;
+        private final MethodChannel.MethodCallHandler handler;
+
+        PolicyHandler(Policy policy, MethodChannel.MethodCallHandler handler) {
+            this.policy = policy;
+            this.handler = handler;
+        }
+
+        @Override
+        public Policy getPolicy() {
+            return policy;
+        }
+
+        @Override
+        public void onMethodCall(@NonNull MethodCall methodCall, @NonNull MethodChannel.Result result) {
+            handler.onMethodCall(methodCall, result);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.flutter.embedding.engine.FlutterEngine;
+import io.flutter.embedding.engine.plugins.FlutterPlugin;
+import io.flutter.embedding.engine.plugins.PluginRegistry;
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugins.GeneratedPluginRegistrant;
+
+/**
+ * Attaches the Flutter plugins of the pre-warmed engine in two steps instead of all at once:
+ * <ul>
+ *   <li>every plugin {@link GeneratedPluginRegistrant} registers, except the deferred ones, right when the engine is
+ *   created;</li>
+ *   <li>the deferred ones later, one plugin per idle main loop slot once the first frame is displayed.</li>
+ * </ul>
+ * The plugins still come from the generated registrant, only the short {@link #DEFERRED_PLUGIN_CLASSES} list is kept
+ * here: plugins that are expensive to attach and only used by panels opened after launch. They are matched by class
+ * name, a plugin dropped from pubspec.yaml simply matches nothing. The Dart services must not use them while
+ * initializing, before runApp, or no first frame is ever drawn.
+ * <p>
+ * Incoming messages are buffered until the deferred plugins are attached, so a Dart call to one of them waits instead
+ * of failing with MissingPluginException. Buffering holds back messages for every channel without a handler, also
+ * the ones that never get a handler and fail only once it is released. It lasts until the idle tasks of the first
+ * activity ran, or until that activity is destroyed, which attaches the remaining plugins at once.
+ * <p>
+ * Attaching a plugin on its first use would be the lazier option, but the engine does not report which channel a
+ * buffered message is for, so there is nothing to trigger it on.
+ */
+public class PluginLoader {
+
+    private static final String TAG = "PluginLoader";
+
+    // Plugins attached after the first frame.
+    private static final Set<String> DEFERRED_PLUGIN_CLASSES = new HashSet<>(Arrays.asList(
+            "io.flutter.plugins.googlemaps.GoogleMapsPlugin",
+            "io.flutter.plugins.videoplayer.VideoPlayerPlugin",
+            "io.flutter.plugins.webviewflutter.WebViewFlutterPlugin",
+            "com.llfbandit.record.RecordPlugin",
+            "com.csdcorp.speech_to_text.SpeechToTextPlugin",
+            "net.nfet.flutter.printing.PrintingPlugin",
+            "io.endigo.plugins.pdfviewflutter.PDFViewFlutterPlugin",
+            "io.flutter.plugins.imagepicker.ImagePickerPlugin",
+            "com.mr.flutter.plugin.filepicker.FilePickerPlugin",
+            "com.amolg.flutterbarcodescanner.FlutterBarcodeScannerPlugin"
+    ));
+
+    private final Engine engine;
+    private final BinaryMessenger messenger;
+    private final List<FlutterPlugin> deferredPlugins = new ArrayList<>();
+    private boolean completed;
+
+    PluginLoader(@NonNull Engine engine) {
+        this.engine = engine;
+        this.messenger = engine.getDartExecutor().getBinaryMessenger();
+    }
+
+    /**
+     * Must be called before the Dart entrypoint is executed.
+     */
+    void attachStartupPlugins() {
+        messenger.enableBufferingIncomingMessages();
+        engine.registrantPlugins = new DeferringPluginRegistry(engine.getPlugins());
+        try {
+            GeneratedPluginRegistrant.registerWith(engine);
+        } finally {
+            engine.registrantPlugins = null;
+        }
+    }
+
+    /**
+     * Schedules the deferred plugins that are not attached yet as idle tasks. Called by every activity that attaches
+     * to the engine, tasks of a destroyed activity are dropped with its scheduler and scheduled again by the next one.
+     */
+    void scheduleDeferredPlugins(@NonNull StartupScheduler scheduler) {
+        if (completed) {
+            return;
+        }
+        for (FlutterPlugin plugin : new ArrayList<>(deferredPlugins)) {
+            scheduler.schedule("plugin " + plugin.getClass().getSimpleName(), StartupScheduler.PRIORITY_IDLE, () ->
+                    attachDeferredPlugin(plugin));
+        }
+        scheduler.schedule("deferred plugins", StartupScheduler.PRIORITY_IDLE, this::attachDeferredPlugins);
+    }
+
+    /**
+     * Attaches the deferred plugins that are not attached yet and delivers the buffered messages.
+     */
+    void attachDeferredPlugins() {
+        if (completed) {
+            return;
+        }
+        for (FlutterPlugin plugin : new ArrayList<>(deferredPlugins)) {
+            attachDeferredPlugin(plugin);
+        }
+        completed = true;
+        messenger.disableBufferingIncomingMessages();
+    }
+
+    private void attachDeferredPlugin(FlutterPlugin plugin) {
+        if (!deferredPlugins.remove(plugin)) {
+            return;
+        }
+        long startTime = System.nanoTime();
+        try {
+            engine.getPlugins().add(plugin);
+        } catch (Exception e) {
+            Log.e(TAG, String.format("Error attaching plugin %s", plugin.getClass().getName()), e);
+        }
+        Log.d(TAG, String.format("Attached plugin %s in %d ms", plugin.getClass().getName(), (System.nanoTime() - startTime) / 1000000L));
+    }
+
+    /**
+     * The engine of {@link App}. While {@link GeneratedPluginRegistrant} runs, its plugin registry keeps the deferred
+     * plugins aside instead of attaching them.
+     */
+    static class Engine extends FlutterEngine {
+        private PluginRegistry registrantPlugins;
+
+        Engine(@NonNull Context context) {
+            // Plugins are attached by the loader, not all at once by the engine.
+            super(context, null, false);
+        }
+
+        @NonNull
+        @Override
+        public PluginRegistry getPlugins() {
+            return (registrantPlugins != null) ? registrantPlugins : super.getPlugins();
+        }
+    }
+
+    private class DeferringPluginRegistry implements PluginRegistry {
+        private final PluginRegistry enginePlugins;
+
+        DeferringPluginRegistry(PluginRegistry enginePlugins) {
+            this.enginePlugins = enginePlugins;
+        }
+
+        @Override
+        public void add(@NonNull FlutterPlugin plugin) {
+            if (DEFERRED_PLUGIN_CLASSES.contains(plugin.getClass().getName())) {
+                deferredPlugins.add(plugin);
+            } else {
+                enginePlugins.add(plugin);
+            }
+        }
+
+        @Override
+        public void add(@NonNull Set<FlutterPlugin> plugins) {
+            for (FlutterPlugin plugin : plugins) {
+                add(plugin);
+            }
+        }
+
+        @Override
+        public boolean has(@NonNull Class<? extends FlutterPlugin> pluginClass) {
+            return enginePlugins.has(pluginClass);
+        }
+
+        @Override
+        public FlutterPlugin get(@NonNull Class<? extends FlutterPlugin> pluginClass) {
+            return enginePlugins.get(pluginClass);
+        }
+
+        @Override
+        public void remove(@NonNull Class<? extends FlutterPlugin> pluginClass) {
+            enginePlugins.remove(pluginClass);
+        }
+
+        @Override
+        public void remove(@NonNull Set<Class<? extends FlutterPlugin>> pluginClasses) {
+            enginePlugins.remove(pluginClasses);
+        }
+
+        @Override
+        public void removeAll() {
+            enginePlugins.removeAll();
+        }
+    }
+}
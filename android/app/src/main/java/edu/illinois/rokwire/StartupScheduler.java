@@ -0,0 +1,198 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the native startup work of the activity on the main thread, ordered by priority:
+ * <ul>
+ *   <li>{@link #PRIORITY_CRITICAL} - right away, for work the first frame or the first Dart calls depend on;</li>
+ *   <li>{@link #PRIORITY_AFTER_FIRST_FRAME} - once Flutter displayed its first frame, one task per main loop message;</li>
+ *   <li>{@link #PRIORITY_IDLE} - after the first frame, one task whenever the main loop goes idle.</li>
+ * </ul>
+ * Deferred tasks also run if the first frame is not reported within {@link #FIRST_FRAME_TIMEOUT_MS}.
+ * Every task is timed and logged, together with the time to first frame.
+ */
+public class StartupScheduler {
+
+    private static final String TAG = "StartupScheduler";
+
+    public static final int PRIORITY_CRITICAL = 0;
+    public static final int PRIORITY_AFTER_FIRST_FRAME = 1;
+    public static final int PRIORITY_IDLE = 2;
+
+    private static final long FIRST_FRAME_TIMEOUT_MS = 5000;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ArrayDeque<Task> afterFirstFrameTasks = new ArrayDeque<>();
+    private final ArrayDeque<Task> idleTasks = new ArrayDeque<>();
+    private final List<Map<String, Object>> timings = new ArrayList<>();
+    private final long startTime = System.nanoTime();
+
+    private long firstFrameTime = -1;
+    private boolean idleHandlerAdded;
+    private boolean cancelled;
+
+    private final Runnable firstFrameTimeout = () -> {
+        Log.w(TAG, "First frame not reported in time, running deferred startup tasks");
+        onFirstFrame();
+    };
+
+    private final Runnable runAfterFirstFrameTask = new Runnable() {
+        @Override
+        public void run() {
+            Task task = afterFirstFrameTasks.poll();
+            if ((task != null) && !cancelled) {
+                runTask(task);
+                if (!afterFirstFrameTasks.isEmpty()) {
+                    mainHandler.post(this);
+                }
+            }
+        }
+    };
+
+    private final MessageQueue.IdleHandler idleHandler = () -> {
+        Task task = idleTasks.poll();
+        if ((task != null) && !cancelled) {
+            runTask(task);
+        }
+        idleHandlerAdded = !idleTasks.isEmpty() && !cancelled;
+        return idleHandlerAdded;
+    };
+
+    public StartupScheduler() {
+        mainHandler.postDelayed(firstFrameTimeout, FIRST_FRAME_TIMEOUT_MS);
+    }
+
+    /**
+     * Must be called on the main thread.
+     */
+    public void schedule(String name, int priority, Runnable runnable) {
+        if (cancelled) {
+            return;
+        }
+        Task task = new Task(name, priority, runnable);
+        if (priority == PRIORITY_CRITICAL) {
+            runTask(task);
+        } else if (priority == PRIORITY_AFTER_FIRST_FRAME) {
+            afterFirstFrameTasks.add(task);
+            if ((firstFrameTime >= 0) && (afterFirstFrameTasks.size() == 1)) {
+                mainHandler.post(runAfterFirstFrameTask);
+            }
+        } else {
+            idleTasks.add(task);
+            if (firstFrameTime >= 0) {
+                addIdleHandler();
+            }
+        }
+    }
+
+    /**
+     * Releases the deferred tasks, called when Flutter reports its first frame.
+     */
+    public void onFirstFrame() {
+        if ((firstFrameTime >= 0) || cancelled) {
+            return;
+        }
+        firstFrameTime = System.nanoTime();
+        mainHandler.removeCallbacks(firstFrameTimeout);
+        Log.d(TAG, String.format("First frame after %d ms", toMillis(firstFrameTime - startTime)));
+
+        if (!afterFirstFrameTasks.isEmpty()) {
+            mainHandler.post(runAfterFirstFrameTask);
+        }
+        if (!idleTasks.isEmpty()) {
+            addIdleHandler();
+        }
+    }
+
+    /**
+     * Drops the tasks not run yet, called when the activity is destroyed.
+     */
+    public void cancel() {
+        cancelled = true;
+        mainHandler.removeCallbacksAndMessages(null);
+        if (idleHandlerAdded) {
+            Looper.myQueue().removeIdleHandler(idleHandler);
+            idleHandlerAdded = false;
+        }
+        afterFirstFrameTasks.clear();
+        idleTasks.clear();
+    }
+
+    /**
+     * @return the time to first frame (-1 if not reported yet) and the timings of the tasks run so far.
+     */
+    public Map<String, Object> getTimings() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("firstFrame", (firstFrameTime >= 0) ? toMillis(firstFrameTime - startTime) : -1L);
+        result.put("tasks", new ArrayList<>(timings));
+        return result;
+    }
+
+    private void addIdleHandler() {
+        if (!idleHandlerAdded) {
+            idleHandlerAdded = true;
+            Looper.myQueue().addIdleHandler(idleHandler);
+        }
+    }
+
+    private void runTask(Task task) {
+        long taskStart = System.nanoTime();
+        try {
+            task.runnable.run();
+        } catch (RuntimeException exception) {
+            Log.e(TAG, String.format("Startup task '%s' failed", task.name), exception);
+        }
+        long taskEnd = System.nanoTime();
+
+        Map<String, Object> timing = new HashMap<>();
+        timing.put("name", task.name);
+        timing.put("priority", task.priority);
+        timing.put("start", toMillis(taskStart - startTime));
+        timing.put("duration", toMillis(taskEnd - taskStart));
+        timings.add(timing);
+        Log.d(TAG, String.format("Startup task '%s' (priority %d) took %d ms, started at %d ms", task.name, task.priority,
+                toMillis(taskEnd - taskStart), toMillis(taskStart - startTime)));
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos / 1000000L;
+    }
+
+    private static class Task {
+        final String name;
+        final int priority;
+        final Runnable runnable;
+
+        Task(String name, int priority, Runnable runnable) {
+            this.name = name;
+            this.priority = priority;
+            this.runnable = runnable;
+        }
+    }
+}
@@ -16,11 +16,8 @@
 
 package edu.illinois.rokwire;
 
-import android.util.Log;
-
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Utils {
 
@@ -28,37 +25,90 @@ public class Utils {
 
         // Value for Path
 
+        private static final int MAX_COMPILED_PATHS = 256;
+        private static final ConcurrentHashMap<String, String[]> compiledPaths = new ConcurrentHashMap<>();
+
         public static String getValueFromPath(Object object, String path, String defaultValue) {
-            Object valueObject = getValueFromPath(object, path);
-            return (valueObject instanceof String) ? (String)valueObject : defaultValue;
+            return getValueFromPath(object, compilePath(path), defaultValue);
         }
 
         public static int getValueFromPath(Object object, String path, int defaultValue) {
-            Object valueObject = getValueFromPath(object, path);
+            return getValueFromPath(object, compilePath(path), defaultValue);
+        }
+
+        public static boolean getValueFromPath(Object object, String path, boolean defaultValue) {
+            return getValueFromPath(object, compilePath(path), defaultValue);
+        }
+
+        public static String getValueFromPath(Object object, String[] keys, String defaultValue) {
+            Object valueObject = getValueFromPath(object, keys);
+            return (valueObject instanceof String) ? (String)valueObject : defaultValue;
+        }
+
+        public static int getValueFromPath(Object object, String[] keys, int defaultValue) {
+            Object valueObject = getValueFromPath(object, keys);
             return (valueObject instanceof Integer) ? (Integer) valueObject : defaultValue;
         }
 
-        private static Object getValueFromPath(Object object, String path) {
-            if (!(object instanceof java.util.Map) || Str.isEmpty(path)) {
+        public static boolean getValueFromPath(Object object, String[] keys, boolean defaultValue) {
+            Object valueObject = getValueFromPath(object, keys);
+            return (valueObject instanceof Boolean) ? (Boolean) valueObject : defaultValue;
+        }
+
+        /**
+         * Splits a dotted path into its keys. Results are cached, so compiling the same path again is a single lookup.
+         * @return null for empty path.
+         */
+        public static String[] compilePath(String path) {
+            if (Str.isEmpty(path)) {
                 return null;
             }
-            java.util.Map map = (java.util.Map) object;
-            int dotFirstIndex = path.indexOf(".");
-            while (dotFirstIndex != -1) {
-                String subPath = path.substring(0, dotFirstIndex);
-                path = path.substring(dotFirstIndex + 1);
-                Object innerObject = (map != null) ? map.get(subPath) : null;
-                map = (innerObject instanceof HashMap) ? (HashMap) innerObject : null;
-                dotFirstIndex = path.indexOf(".");
+            String[] keys = compiledPaths.get(path);
+            if (keys == null) {
+                keys = splitPath(path);
+                if (compiledPaths.size() < MAX_COMPILED_PATHS) {
+                    String[] existingKeys = compiledPaths.putIfAbsent(path, keys);
+                    if (existingKeys != null) {
+                        keys = existingKeys;
+                    }
+                }
+            }
+            return keys;
+        }
+
+        private static String[] splitPath(String path) {
+            int keysCount = 1;
+            for (int index = path.indexOf('.'); index != -1; index = path.indexOf('.', index + 1)) {
+                keysCount++;
+            }
+            String[] keys = new String[keysCount];
+            int keyStart = 0;
+            for (int keyIndex = 0; keyIndex < keysCount - 1; keyIndex++) {
+                int keyEnd = path.indexOf('.', keyStart);
+                keys[keyIndex] = path.substring(keyStart, keyEnd);
+                keyStart = keyEnd + 1;
+            }
+            keys[keysCount - 1] = path.substring(keyStart);
+            return keys;
+        }
+
+        private static Object getValueFromPath(Object object, String[] keys) {
+            if (!(object instanceof java.util.Map) || (keys == null) || (keys.length == 0)) {
+                return null;
+            }
+            Object value = object;
+            for (String key : keys) {
+                if (!(value instanceof java.util.Map)) {
+                    return null;
+                }
+                value = ((java.util.Map<?, ?>) value).get(key);
             }
-            Object generalValue = (map != null) ? map.get(path) : null;
-            return getPlatformValue(generalValue);
+            return getPlatformValue(value);
         }
 
         private static Object getPlatformValue(Object object) {
-            if (object instanceof HashMap) {
-                HashMap hashMap = (HashMap) object;
-                return hashMap.get("android");
+            if (object instanceof java.util.Map) {
+                return ((java.util.Map<?, ?>) object).get("android");
             } else {
                 return object;
             }
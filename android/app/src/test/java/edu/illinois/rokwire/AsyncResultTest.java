@@ -0,0 +1,140 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import android.app.Application;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.time.Duration;
+
+import io.flutter.plugin.common.MethodChannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+// A plain Application, App would start the Flutter engine.
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34, application = Application.class)
+public class AsyncResultTest {
+
+    @Test
+    public void wrappersAreNotWrappedAgain() {
+        AsyncResult result = AsyncResult.of(new RecordingResult(), "method");
+        assertSame(result, AsyncResult.of(result, "method"));
+    }
+
+    @Test
+    public void secondRepliesAreDroppedAsDuplicates() {
+        long duplicateCount = stat("duplicate");
+        RecordingResult recordingResult = new RecordingResult();
+        AsyncResult result = AsyncResult.of(recordingResult, "method");
+        result.success(1);
+        result.error("code", null, null);
+        result.notImplemented();
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertTrue(result.isCompleted());
+        assertEquals(1, recordingResult.replies);
+        assertEquals(1, recordingResult.value);
+        assertEquals(duplicateCount + 2, stat("duplicate"));
+    }
+
+    @Test
+    public void repliesFromOtherThreadsAreDeliveredOnTheMainThread() throws InterruptedException {
+        RecordingResult recordingResult = new RecordingResult();
+        AsyncResult result = AsyncResult.of(recordingResult, "method");
+        Thread thread = new Thread(() -> result.success("value"));
+        thread.start();
+        thread.join();
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals("value", recordingResult.value);
+        assertSame(Looper.getMainLooper().getThread(), recordingResult.thread);
+    }
+
+    @Test
+    public void unansweredCallsTimeOutAndLaterRepliesCountAsLate() {
+        long timeoutsCount = stat("timeouts");
+        long lateCount = stat("late");
+        RecordingResult recordingResult = new RecordingResult();
+        AsyncResult result = AsyncResult.of(recordingResult, "method").setTimeout(100);
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(100));
+
+        assertEquals(AsyncResult.TIMEOUT_ERROR_CODE, recordingResult.errorCode);
+        result.success(1);
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals(1, recordingResult.replies);
+        assertEquals(timeoutsCount + 1, stat("timeouts"));
+        assertEquals(lateCount + 1, stat("late"));
+    }
+
+    @Test
+    public void repliesCancelTheTimeout() {
+        long timeoutsCount = stat("timeouts");
+        RecordingResult recordingResult = new RecordingResult();
+        AsyncResult result = AsyncResult.of(recordingResult, "method").setTimeout(100);
+        result.success(1);
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(200));
+
+        assertEquals(1, recordingResult.replies);
+        assertEquals(1, recordingResult.value);
+        assertEquals(timeoutsCount, stat("timeouts"));
+    }
+
+    private static long stat(String key) {
+        return (Long) AsyncResult.getStats().get(key);
+    }
+
+    private static class RecordingResult implements MethodChannel.Result {
+        volatile int replies;
+        volatile Object value;
+        volatile String errorCode;
+        volatile Thread thread;
+
+        @Override
+        public void success(Object result) {
+            reply();
+            value = result;
+        }
+
+        @Override
+        public void error(@NonNull String errorCode, String errorMessage, Object errorDetails) {
+            reply();
+            this.errorCode = errorCode;
+        }
+
+        @Override
+        public void notImplemented() {
+            reply();
+        }
+
+        private void reply() {
+            replies++;
+            thread = Thread.currentThread();
+        }
+    }
+}
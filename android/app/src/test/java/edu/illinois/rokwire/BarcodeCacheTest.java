@@ -0,0 +1,165 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import com.google.zxing.BarcodeFormat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BarcodeCacheTest {
+
+    private static final BarcodeRequest REQUEST_A = new BarcodeRequest("a", BarcodeFormat.QR_CODE, 100, 100);
+    private static final BarcodeRequest REQUEST_B = new BarcodeRequest("b", BarcodeFormat.QR_CODE, 100, 100);
+    private static final BarcodeRequest REQUEST_C = new BarcodeRequest("c", BarcodeFormat.QR_CODE, 100, 100);
+    private static final BarcodeRequest REQUEST_D = new BarcodeRequest("d", BarcodeFormat.QR_CODE, 100, 100);
+
+    private File diskDir;
+
+    @Before
+    public void setUp() throws IOException {
+        diskDir = Files.createTempDirectory("barcodes").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = diskDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        diskDir.delete();
+    }
+
+    @Test
+    public void memoryEvictsLeastRecentlyUsedEntries() {
+        BarcodeCache cache = new BarcodeCache(30, null, 0);
+        cache.put(REQUEST_A, data(10, 1));
+        cache.put(REQUEST_B, data(10, 2));
+        cache.put(REQUEST_C, data(10, 3));
+        assertNotNull(cache.getFromMemory(REQUEST_A));
+        cache.put(REQUEST_D, data(10, 4));
+
+        assertNull(cache.getFromMemory(REQUEST_B));
+        assertArrayEquals(data(10, 1), cache.getFromMemory(REQUEST_A));
+        assertArrayEquals(data(10, 3), cache.getFromMemory(REQUEST_C));
+        assertArrayEquals(data(10, 4), cache.getFromMemory(REQUEST_D));
+        assertEquals(30L, cache.getStats().get("bytes"));
+        assertEquals(1L, cache.getStats().get("evictions"));
+    }
+
+    @Test
+    public void replacedEntriesAreCountedOnce() {
+        BarcodeCache cache = new BarcodeCache(30, null, 0);
+        cache.put(REQUEST_A, data(10, 1));
+        cache.put(REQUEST_A, data(20, 2));
+
+        assertArrayEquals(data(20, 2), cache.getFromMemory(REQUEST_A));
+        assertEquals(20L, cache.getStats().get("bytes"));
+        assertEquals(0L, cache.getStats().get("evictions"));
+    }
+
+    @Test
+    public void entriesOverTheBudgetAreNotKept() {
+        BarcodeCache cache = new BarcodeCache(30, null, 0);
+        cache.put(REQUEST_A, data(10, 1));
+        cache.put(REQUEST_B, data(31, 2));
+
+        assertNull(cache.getFromMemory(REQUEST_B));
+        assertNotNull(cache.getFromMemory(REQUEST_A));
+    }
+
+    @Test
+    public void diskEntriesOutliveTheCache() {
+        new BarcodeCache(100, diskDir, 100).put(REQUEST_A, data(10, 1));
+
+        BarcodeCache cache = new BarcodeCache(100, diskDir, 100);
+        assertNull(cache.getFromMemory(REQUEST_A));
+        assertArrayEquals(data(10, 1), cache.get(REQUEST_A));
+        assertNull(cache.get(REQUEST_B));
+        assertArrayEquals(data(10, 1), cache.getFromMemory(REQUEST_A));
+        assertEquals(1L, cache.getStats().get("diskHits"));
+        assertEquals(1L, cache.getStats().get("misses"));
+    }
+
+    @Test
+    public void diskIsTrimmedOldestFirst() {
+        BarcodeCache cache = new BarcodeCache(100, diskDir, 25);
+        long now = System.currentTimeMillis();
+        cache.put(REQUEST_A, data(10, 1));
+        File fileA = single(newFiles(new HashSet<>()));
+        fileA.setLastModified(now - 20000);
+        cache.put(REQUEST_B, data(10, 2));
+        File fileB = single(newFiles(new HashSet<>(Arrays.asList(fileA))));
+        fileB.setLastModified(now - 10000);
+        cache.put(REQUEST_C, data(10, 3));
+
+        assertFalse(fileA.exists());
+        assertTrue(fileB.exists());
+        BarcodeCache reopenedCache = new BarcodeCache(100, diskDir, 25);
+        assertNull(reopenedCache.get(REQUEST_A));
+        assertArrayEquals(data(10, 2), reopenedCache.get(REQUEST_B));
+        assertArrayEquals(data(10, 3), reopenedCache.get(REQUEST_C));
+    }
+
+    @Test
+    public void staleTempFilesAreDeletedOnTrim() throws IOException {
+        File staleFile = new File(diskDir, "stale.png123.tmp");
+        File activeFile = new File(diskDir, "active.png456.tmp");
+        assertTrue(staleFile.createNewFile());
+        assertTrue(activeFile.createNewFile());
+        staleFile.setLastModified(System.currentTimeMillis() - 60 * 60 * 1000);
+
+        new BarcodeCache(100, diskDir, 100).put(REQUEST_A, data(10, 1));
+
+        assertFalse(staleFile.exists());
+        assertTrue(activeFile.exists());
+    }
+
+    private Set<File> newFiles(Set<File> knownFiles) {
+        Set<File> files = new HashSet<>(Arrays.asList(diskDir.listFiles((dir, name) -> name.endsWith(".png"))));
+        files.removeAll(knownFiles);
+        return files;
+    }
+
+    private static File single(Set<File> files) {
+        assertEquals(1, files.size());
+        return files.iterator().next();
+    }
+
+    private static byte[] data(int length, int value) {
+        byte[] data = new byte[length];
+        Arrays.fill(data, (byte) value);
+        return data;
+    }
+}
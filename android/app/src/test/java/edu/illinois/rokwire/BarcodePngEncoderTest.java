@@ -0,0 +1,114 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import com.google.zxing.common.BitMatrix;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class BarcodePngEncoderTest {
+
+    // Around the byte boundaries of the packed rows.
+    private static final int[] WIDTHS = { 1, 7, 8, 9, 15, 16, 17, 33, 250, 257 };
+    private static final int[] FILTERS = { BarcodePngEncoder.FILTER_NONE, BarcodePngEncoder.FILTER_UP };
+    private static final int[] STRATEGIES = { Deflater.DEFAULT_STRATEGY, Deflater.FILTERED, Deflater.HUFFMAN_ONLY };
+
+    @Test
+    public void encodedImagesDecodeToTheMatrix() throws IOException {
+        Random random = new Random(42);
+        for (int filter : FILTERS) {
+            for (int strategy : STRATEGIES) {
+                BarcodePngEncoder encoder = new BarcodePngEncoder(Deflater.BEST_SPEED, strategy, filter);
+                try {
+                    for (int width : WIDTHS) {
+                        BitMatrix matrix = randomMatrix(random, width, 1 + random.nextInt(40));
+                        assertDecodesTo(matrix, encoder.encode(matrix), "filter " + filter + ", strategy " + strategy);
+                    }
+                } finally {
+                    encoder.release();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void reusedEncoderShrinksBackToSmallImages() throws IOException {
+        Random random = new Random(7);
+        BarcodePngEncoder encoder = new BarcodePngEncoder(Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY,
+                BarcodePngEncoder.FILTER_UP);
+        try {
+            // Past the retained output size, then small again: buffers from the large image must not leak into it.
+            BitMatrix large = randomMatrix(random, 2000, 1200);
+            assertDecodesTo(large, encoder.encode(large), "large");
+            BitMatrix small = randomMatrix(random, 21, 21);
+            assertDecodesTo(small, encoder.encode(small), "small");
+        } finally {
+            encoder.release();
+        }
+    }
+
+    @Test
+    public void uniformImagesDecode() throws IOException {
+        BarcodePngEncoder encoder = new BarcodePngEncoder(Deflater.BEST_COMPRESSION, Deflater.DEFAULT_STRATEGY,
+                BarcodePngEncoder.FILTER_NONE);
+        try {
+            BitMatrix white = new BitMatrix(13, 5);
+            assertDecodesTo(white, encoder.encode(white), "white");
+            BitMatrix black = new BitMatrix(13, 5);
+            black.setRegion(0, 0, 13, 5);
+            assertDecodesTo(black, encoder.encode(black), "black");
+        } finally {
+            encoder.release();
+        }
+    }
+
+    private static BitMatrix randomMatrix(Random random, int width, int height) {
+        BitMatrix matrix = new BitMatrix(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (random.nextBoolean()) {
+                    matrix.set(x, y);
+                }
+            }
+        }
+        return matrix;
+    }
+
+    private static void assertDecodesTo(BitMatrix matrix, byte[] png, String message) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        assertNotNull(message, image);
+        assertEquals(message, matrix.getWidth(), image.getWidth());
+        assertEquals(message, matrix.getHeight(), image.getHeight());
+        for (int y = 0; y < matrix.getHeight(); y++) {
+            for (int x = 0; x < matrix.getWidth(); x++) {
+                boolean black = (image.getRGB(x, y) & 0xFFFFFF) == 0;
+                assertEquals(message + " at " + x + "," + y, matrix.get(x, y), black);
+            }
+        }
+    }
+}
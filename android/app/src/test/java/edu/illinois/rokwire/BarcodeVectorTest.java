@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import com.google.zxing.common.BitMatrix;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BarcodeVectorTest {
+
+    // X X . . X
+    // X X . . X
+    // . . . . .
+    // . X X X .
+    private static final String[] ROWS = { "XX..X", "XX..X", ".....", ".XXX." };
+
+    @Test
+    public void identicalRowsShareAGroup() {
+        int[] runs = BarcodeVector.encodeRuns(matrix(ROWS));
+        assertArrayEquals(new int[] { 2, 2, 0, 2, 4, 1, 1, 0, 1, 1, 1, 3 }, runs);
+    }
+
+    @Test
+    public void svgPathCoversEachRun() {
+        assertEquals("M0 0h2v2h-2zM4 0h1v2h-1zM1 3h3v1h-3z", BarcodeVector.encodeSvgPath(matrix(ROWS)));
+    }
+
+    @Test
+    public void emptyMatrixHasOneEmptyGroup() {
+        assertArrayEquals(new int[] { 3, 0 }, BarcodeVector.encodeRuns(new BitMatrix(4, 3)));
+        assertEquals("", BarcodeVector.encodeSvgPath(new BitMatrix(4, 3)));
+    }
+
+    @Test
+    public void runsDecodeToTheMatrix() {
+        Random random = new Random(42);
+        // Around the 32 bit words of the rows, runs reaching the last column included.
+        for (int width : new int[] { 1, 31, 32, 33, 64, 65, 100 }) {
+            BitMatrix matrix = new BitMatrix(width, 50);
+            for (int y = 0; y < matrix.getHeight(); y++) {
+                // Repeated rows, as in 2D symbols drawn with several pixels per module.
+                if ((y > 0) && random.nextBoolean()) {
+                    for (int x = 0; x < width; x++) {
+                        if (matrix.get(x, y - 1)) {
+                            matrix.set(x, y);
+                        }
+                    }
+                    continue;
+                }
+                for (int x = 0; x < width; x++) {
+                    if (random.nextBoolean()) {
+                        matrix.set(x, y);
+                    }
+                }
+            }
+            assertEquals("width " + width, matrix, decodeRuns(BarcodeVector.encodeRuns(matrix), width, matrix.getHeight()));
+        }
+    }
+
+    private static BitMatrix decodeRuns(int[] runs, int width, int height) {
+        BitMatrix matrix = new BitMatrix(width, height);
+        int y = 0;
+        int index = 0;
+        while (index < runs.length) {
+            int rowsCount = runs[index++];
+            int runsCount = runs[index++];
+            for (int run = 0; run < runsCount; run++) {
+                matrix.setRegion(runs[index++], y, runs[index++], rowsCount);
+            }
+            y += rowsCount;
+        }
+        assertEquals(height, y);
+        return matrix;
+    }
+
+    private static BitMatrix matrix(String[] rows) {
+        BitMatrix matrix = new BitMatrix(rows[0].length(), rows.length);
+        for (int y = 0; y < rows.length; y++) {
+            for (int x = 0; x < rows[y].length(); x++) {
+                if (rows[y].charAt(x) == 'X') {
+                    matrix.set(x, y);
+                }
+            }
+        }
+        return matrix;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BarcodeWritersTest {
+
+    @Test
+    public void qrCodesDefaultToTheLowestErrorCorrection() {
+        Map<EncodeHintType, Object> hints = BarcodeWriters.buildHints(BarcodeFormat.QR_CODE, null);
+        assertEquals(Collections.singletonMap(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.L), hints);
+    }
+
+    @Test
+    public void qrCodeHints() {
+        Map<String, Object> hintsParams = new HashMap<>();
+        hintsParams.put("errorCorrection", "H");
+        hintsParams.put("margin", 2);
+        hintsParams.put("charset", "UTF-8");
+        hintsParams.put("qrVersion", 5);
+        Map<EncodeHintType, Object> hints = BarcodeWriters.buildHints(BarcodeFormat.QR_CODE, params(hintsParams));
+
+        assertEquals(4, hints.size());
+        assertEquals(ErrorCorrectionLevel.H, hints.get(EncodeHintType.ERROR_CORRECTION));
+        assertEquals(2, hints.get(EncodeHintType.MARGIN));
+        assertEquals("UTF-8", hints.get(EncodeHintType.CHARACTER_SET));
+        assertEquals(5, hints.get(EncodeHintType.QR_VERSION));
+    }
+
+    @Test
+    public void unknownQrLevelFallsBackToTheLowest() {
+        Map<EncodeHintType, Object> hints = BarcodeWriters.buildHints(BarcodeFormat.QR_CODE,
+                params(Collections.singletonMap("errorCorrection", "X")));
+        assertEquals(ErrorCorrectionLevel.L, hints.get(EncodeHintType.ERROR_CORRECTION));
+    }
+
+    @Test
+    public void numericErrorCorrectionAppliesToAztecAndPdf417Only() {
+        Object params = params(Collections.singletonMap("errorCorrection", 33));
+        assertEquals(33, BarcodeWriters.buildHints(BarcodeFormat.AZTEC, params).get(EncodeHintType.ERROR_CORRECTION));
+        assertEquals(33, BarcodeWriters.buildHints(BarcodeFormat.PDF_417, params).get(EncodeHintType.ERROR_CORRECTION));
+        assertTrue(BarcodeWriters.buildHints(BarcodeFormat.CODE_128, params).isEmpty());
+        assertTrue(BarcodeWriters.buildHints(BarcodeFormat.AZTEC, params(Collections.singletonMap("errorCorrection", "H"))).isEmpty());
+    }
+
+    @Test
+    public void platformSpecificHintsUseTheAndroidValue() {
+        Map<String, Object> margin = new HashMap<>();
+        margin.put("android", 3);
+        margin.put("ios", 1);
+        Map<EncodeHintType, Object> hints = BarcodeWriters.buildHints(BarcodeFormat.CODE_128, params(Collections.singletonMap("margin", margin)));
+        assertEquals(Collections.singletonMap(EncodeHintType.MARGIN, 3), hints);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void hintsAreReadOnly() {
+        BarcodeWriters.buildHints(BarcodeFormat.QR_CODE, null).put(EncodeHintType.MARGIN, 0);
+    }
+
+    @Test
+    public void writersCoverTheEncodableFormats() {
+        for (BarcodeFormat format : BarcodeFormat.values()) {
+            boolean encodable = (format != BarcodeFormat.MAXICODE) && (format != BarcodeFormat.RSS_14) &&
+                    (format != BarcodeFormat.RSS_EXPANDED) && (format != BarcodeFormat.UPC_EAN_EXTENSION);
+            if (encodable) {
+                assertNotNull(format.name(), BarcodeWriters.getWriter(format));
+            } else {
+                assertNull(format.name(), BarcodeWriters.getWriter(format));
+            }
+        }
+        assertTrue(BarcodeWriters.getWriter(BarcodeFormat.QR_CODE) instanceof QRCodeWriter);
+    }
+
+    private static Object params(Map<String, ?> hints) {
+        return Collections.singletonMap("hints", hints);
+    }
+}
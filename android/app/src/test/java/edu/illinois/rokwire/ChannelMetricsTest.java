@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ChannelMetricsTest {
+
+    @Test
+    public void smallValuesAreSizedWhole() {
+        Map<String, Object> value = new HashMap<>();
+        value.put("ab", Arrays.asList(1, "xyz", null));
+        // Map 2 + key 4 + list (2 + 5 + 5 + 1).
+        assertEquals(19, ChannelMetrics.estimateSize(value));
+    }
+
+    @Test
+    public void largeValuesAreExtrapolated() {
+        List<Object> value = new ArrayList<>();
+        for (int index = 0; index < 10000; index++) {
+            value.add("0123456789");
+        }
+        long size = ChannelMetrics.estimateSize(value);
+        assertEquals(2 + 10000 * 12, size);
+
+        List<Object> nested = new ArrayList<>();
+        for (int index = 0; index < 100; index++) {
+            nested.add(value);
+        }
+        size = ChannelMetrics.estimateSize(nested);
+        assertTrue(size >= 100L * 10000 * 12);
+        assertTrue(size <= 101L * 10000 * 12);
+    }
+
+    @Test
+    public void resetReturnsTheMetricsItStartsOverFrom() {
+        ChannelMetrics metrics = new ChannelMetrics();
+        List<MethodChannel.Result> results = new ArrayList<>();
+        MethodChannel.MethodCallHandler handler = metrics.intercept((methodCall, result) -> results.add(result));
+        handler.onMethodCall(new MethodCall("method", null), new NoOpResult());
+        results.get(0).success(null);
+        handler.onMethodCall(new MethodCall("method", null), new NoOpResult());
+
+        Map<String, Object> previous = metrics.reset();
+        Map<?, ?> methodStats = (Map<?, ?>) previous.get("method");
+        assertEquals(2L, methodStats.get("calls"));
+        assertEquals(1L, methodStats.get("successes"));
+        assertTrue(metrics.toMap().isEmpty());
+
+        // The in flight reply goes to the stats that were reset.
+        results.get(1).success(null);
+        assertNull(metrics.toMap().get("method"));
+    }
+
+    private static class NoOpResult implements MethodChannel.Result {
+        @Override
+        public void success(Object result) {
+        }
+
+        @Override
+        public void error(String errorCode, String errorMessage, Object errorDetails) {
+        }
+
+        @Override
+        public void notImplemented() {
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ChannelRecordingTest {
+
+    @Test
+    public void callsReadBackAsWritten() throws IOException {
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("null", null);
+        arguments.put("true", true);
+        arguments.put("false", false);
+        arguments.put("int", -123456);
+        arguments.put("long", Long.MIN_VALUE);
+        arguments.put("double", 0.25);
+        arguments.put("string", "\u00e9t\u00e9 \ud83d\ude00");
+        arguments.put("list", Arrays.asList(1, "two", null, Arrays.asList(3L)));
+        Map<String, Object> nested = new HashMap<>();
+        nested.put("android", 7);
+        arguments.put("map", nested);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ChannelRecording.Writer writer = new ChannelRecording.Writer(output)) {
+            writer.write(0, ChannelRecording.CHANNEL_MAIN, "init", arguments);
+            writer.write(1500, ChannelRecording.CHANNEL_BACKGROUND, "barcode", null);
+            writer.write(1500, ChannelRecording.CHANNEL_MAIN, "init", "again");
+        }
+
+        List<ChannelRecording.Call> calls = read(output.toByteArray());
+        assertEquals(3, calls.size());
+        assertCall(calls.get(0), 0, ChannelRecording.CHANNEL_MAIN, "init");
+        assertEquals(arguments, calls.get(0).arguments);
+        assertCall(calls.get(1), 1500, ChannelRecording.CHANNEL_BACKGROUND, "barcode");
+        assertNull(calls.get(1).arguments);
+        assertCall(calls.get(2), 1500, ChannelRecording.CHANNEL_MAIN, "init");
+        assertEquals("again", calls.get(2).arguments);
+    }
+
+    @Test
+    public void typedArraysReadBackAsWritten() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ChannelRecording.Writer writer = new ChannelRecording.Writer(output)) {
+            writer.write(0, ChannelRecording.CHANNEL_MAIN, "bytes", new byte[] { 0, -1, 127 });
+            writer.write(0, ChannelRecording.CHANNEL_MAIN, "ints", new int[] { Integer.MIN_VALUE, 0, Integer.MAX_VALUE });
+            writer.write(0, ChannelRecording.CHANNEL_MAIN, "longs", new long[] { Long.MIN_VALUE, -1, Long.MAX_VALUE });
+            writer.write(0, ChannelRecording.CHANNEL_MAIN, "doubles", new double[] { -0.5, Double.MAX_VALUE });
+            writer.write(0, ChannelRecording.CHANNEL_MAIN, "floats", new float[] { 1.5f, -2f });
+        }
+
+        List<ChannelRecording.Call> calls = read(output.toByteArray());
+        assertEquals(5, calls.size());
+        assertArrayEquals(new byte[] { 0, -1, 127 }, (byte[]) calls.get(0).arguments);
+        assertArrayEquals(new int[] { Integer.MIN_VALUE, 0, Integer.MAX_VALUE }, (int[]) calls.get(1).arguments);
+        assertArrayEquals(new long[] { Long.MIN_VALUE, -1, Long.MAX_VALUE }, (long[]) calls.get(2).arguments);
+        assertArrayEquals(new double[] { -0.5, Double.MAX_VALUE }, (double[]) calls.get(3).arguments, 0);
+        assertArrayEquals(new float[] { 1.5f, -2f }, (float[]) calls.get(4).arguments, 0);
+    }
+
+    @Test
+    public void outOfOrderTimesAreRecordedAsSimultaneous() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ChannelRecording.Writer writer = new ChannelRecording.Writer(output)) {
+            writer.write(1000, ChannelRecording.CHANNEL_MAIN, "a", null);
+            writer.write(900, ChannelRecording.CHANNEL_BACKGROUND, "b", null);
+            writer.write(1200, ChannelRecording.CHANNEL_MAIN, "a", null);
+        }
+
+        List<ChannelRecording.Call> calls = read(output.toByteArray());
+        assertEquals(1000, calls.get(0).timeUs);
+        assertEquals(1000, calls.get(1).timeUs);
+        assertEquals(1200, calls.get(2).timeUs);
+    }
+
+    @Test
+    public void unclosedRecordingReadsUpToTheLastFlush() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ChannelRecording.Writer writer = new ChannelRecording.Writer(output);
+        writer.write(0, ChannelRecording.CHANNEL_MAIN, "flushed", 1);
+        writer.flush();
+        writer.write(10, ChannelRecording.CHANNEL_MAIN, "pending", 2);
+
+        List<ChannelRecording.Call> calls = read(output.toByteArray());
+        assertEquals(1, calls.size());
+        assertEquals("flushed", calls.get(0).method);
+        writer.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void otherFilesAreRejected() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+            gzip.write(new byte[] { 'P', 'K', 3, 4, 0 });
+        }
+        read(output.toByteArray());
+    }
+
+    private static List<ChannelRecording.Call> read(byte[] bytes) throws IOException {
+        try (ChannelRecording.Reader reader = new ChannelRecording.Reader(new ByteArrayInputStream(bytes))) {
+            return reader.readAll();
+        }
+    }
+
+    private static void assertCall(ChannelRecording.Call call, long timeUs, int channel, String method) {
+        assertEquals(timeUs, call.timeUs);
+        assertEquals(channel, call.channel);
+        assertEquals(method, call.method);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ConfigStoreTest {
+
+    private final ConfigStore store = ConfigStore.getInstance();
+
+    @Before
+    public void resetStore() {
+        // The store is process wide, a full config replaces whatever a previous test left.
+        store.applyInit(map("config", map("a", "1", "b", "2"), "hash", "h"));
+    }
+
+    @Test
+    public void fullConfigReplacesContent() {
+        Map<String, Object> reply = store.applyInit(map("config", map("c", map("android", 3)), "hash", "full"));
+        assertEquals("full", reply.get("hash"));
+        assertEquals(Collections.emptyList(), reply.get("stale"));
+        assertNull(store.getEntry("a"));
+        assertEquals(map("android", 3), store.getEntry("c"));
+    }
+
+    @Test
+    public void baseHashesKeepTheFullConfigForLaterDeltas() {
+        Map<String, Object> reply = store.applyInit(map(
+                "baseHashes", map("a", "ha", "b", "hb"),
+                "hashes", map("a", "ha", "b", "hb2"),
+                "delta", map("b", "22"),
+                "hash", "h2"));
+        assertEquals("h2", reply.get("hash"));
+        assertEquals(Collections.emptyList(), reply.get("stale"));
+        assertEquals("1", store.getEntry("a"));
+        assertEquals("22", store.getEntry("b"));
+    }
+
+    @Test
+    public void deltaWithoutBaseHashesAsksForEveryEntry() {
+        Map<String, Object> reply = store.applyInit(map("hashes", map("a", "ha", "b", "hb"), "hash", "h2"));
+        assertNull(reply.get("hash"));
+        assertEquals(Arrays.asList("a", "b"), sorted(reply.get("stale")));
+        assertNull(store.getEntry("a"));
+        assertNull(store.getEntry("b"));
+
+        reply = store.applyInit(map("hashes", map("a", "ha", "b", "hb"), "delta", map("a", "1", "b", "2"), "hash", "h2"));
+        assertEquals("h2", reply.get("hash"));
+        assertEquals(Collections.emptyList(), reply.get("stale"));
+        assertEquals("2", store.getEntry("b"));
+    }
+
+    @Test
+    public void deltaReportsStaleEntriesAndRemovesMissingOnes() {
+        store.applyInit(map("baseHashes", map("a", "ha", "b", "hb"), "hashes", map("a", "ha", "b", "hb"), "hash", "h"));
+
+        // "b" is gone, "c" is new but its content was not sent.
+        Map<String, Object> reply = store.applyInit(map("hashes", map("a", "ha", "c", "hc"), "hash", "h3"));
+        assertNull(reply.get("hash"));
+        assertEquals(Collections.singletonList("c"), reply.get("stale"));
+        assertNull(store.getEntry("b"));
+        assertEquals("1", store.getEntry("a"));
+
+        reply = store.applyInit(map("hashes", map("a", "ha", "c", "hc"), "delta", map("c", "3"), "hash", "h3"));
+        assertEquals("h3", reply.get("hash"));
+        assertEquals(Collections.emptyList(), reply.get("stale"));
+        assertEquals("3", store.getEntry("c"));
+    }
+
+    @Test
+    public void baseHashesDropEntriesTheyDoNotCover() {
+        assertEquals("2", store.getEntry("b"));
+        store.applyInit(map("baseHashes", map("a", "ha"), "hashes", map("a", "ha", "b", "hb"), "hash", "h"));
+        assertNull(store.getEntry("b"));
+        assertEquals("1", store.getEntry("a"));
+    }
+
+    private static Map<String, Object> map(Object... keysAndValues) {
+        Map<String, Object> map = new HashMap<>();
+        for (int index = 0; index + 1 < keysAndValues.length; index += 2) {
+            map.put((String) keysAndValues[index], keysAndValues[index + 1]);
+        }
+        return map;
+    }
+
+    private static List<String> sorted(Object list) {
+        @SuppressWarnings("unchecked")
+        List<String> strings = (List<String>) list;
+        Collections.sort(strings);
+        return strings;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValuesHaveBucketsOfTheirOwn() {
+        for (long value = 0; value < 16; value++) {
+            int index = LatencyHistogram.getIndex(value);
+            assertEquals(value, index);
+            assertEquals(value, LatencyHistogram.getUpperBound(index));
+        }
+    }
+
+    @Test
+    public void bucketsCoverEveryValueOnce() {
+        // Each value falls in the bucket whose upper bound is the first one not below it.
+        long previousUpperBound = -1;
+        for (int index = 0; index < 16 + 8 * 20; index++) {
+            long upperBound = LatencyHistogram.getUpperBound(index);
+            assertTrue(upperBound > previousUpperBound);
+            assertEquals(index, LatencyHistogram.getIndex(previousUpperBound + 1));
+            assertEquals(index, LatencyHistogram.getIndex(upperBound));
+            previousUpperBound = upperBound;
+        }
+    }
+
+    @Test
+    public void bucketsStayWithinOneEighthOfTheirValues() {
+        for (long value = 16; value < (1L << 40); value = value * 3 / 2 + 1) {
+            long upperBound = LatencyHistogram.getUpperBound(LatencyHistogram.getIndex(value));
+            assertTrue(upperBound >= value);
+            assertTrue(upperBound - value <= value / 8);
+        }
+        int lastIndex = LatencyHistogram.getIndex(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.getUpperBound(lastIndex));
+    }
+
+    @Test
+    public void percentilesAndTotals() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+        for (long value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+        histogram.record(-5);
+        assertEquals(101, histogram.getCount());
+        assertEquals(5050, histogram.getTotal());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50, histogram.getMean());
+        assertEquals(0, histogram.getPercentile(0));
+        // 50 falls in the 48..51 bucket, 99 in 96..103 capped by the max.
+        assertEquals(51, histogram.getPercentile(50));
+        assertEquals(100, histogram.getPercentile(99));
+        assertEquals(100, histogram.getPercentile(100));
+    }
+}
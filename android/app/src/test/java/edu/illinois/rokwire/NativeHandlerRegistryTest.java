@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NativeHandlerRegistryTest {
+
+    private final List<Runnable> mainTasks = new ArrayList<>();
+    private final List<Runnable> serialTasks = new ArrayList<>();
+    private boolean serialRejects;
+    private NativeHandlerRegistry registry;
+
+    @Before
+    public void setUp() {
+        registry = new NativeHandlerRegistry(mainTasks::add, runnable -> {
+            if (serialRejects) {
+                throw new RejectedExecutionException();
+            }
+            serialTasks.add(runnable);
+        });
+    }
+
+    @Test
+    public void unregisteredMethodsAreLeftToTheCaller() {
+        RecordingResult result = new RecordingResult();
+        assertFalse(registry.dispatch(new MethodCall("missing", null), result));
+        assertFalse(registry.dispatch(new MethodCall(null, null), result));
+        assertFalse(registry.isRegistered(null));
+        assertEquals(0, result.replies);
+    }
+
+    @Test
+    public void callsRunOnTheExecutorOfTheirPolicy() {
+        registry.register("main", NativeHandler.Policy.MAIN, (methodCall, result) -> result.success("main"));
+        registry.register("serial", NativeHandler.Policy.SERIAL, (methodCall, result) -> result.success("serial"));
+        registry.register("caller", NativeHandler.Policy.CALLER, (methodCall, result) -> result.success(methodCall.arguments));
+
+        RecordingResult callerResult = new RecordingResult();
+        assertTrue(registry.dispatch(new MethodCall("caller", "arguments"), callerResult));
+        assertEquals("arguments", callerResult.value);
+
+        RecordingResult mainResult = new RecordingResult();
+        RecordingResult serialResult = new RecordingResult();
+        assertTrue(registry.dispatch(new MethodCall("main", null), mainResult));
+        assertTrue(registry.dispatch(new MethodCall("serial", null), serialResult));
+        assertEquals(0, mainResult.replies + serialResult.replies);
+        assertEquals(1, mainTasks.size());
+        assertEquals(1, serialTasks.size());
+
+        mainTasks.get(0).run();
+        serialTasks.get(0).run();
+        assertEquals("main", mainResult.value);
+        assertEquals("serial", serialResult.value);
+    }
+
+    @Test
+    public void rejectedCallsReplyBusy() {
+        registry.register("serial", NativeHandler.Policy.SERIAL, (methodCall, result) -> result.success(true));
+        serialRejects = true;
+
+        RecordingResult result = new RecordingResult();
+        assertTrue(registry.dispatch(new MethodCall("serial", null), result));
+        assertEquals(NativeHandlerRegistry.BUSY_ERROR_CODE, result.errorCode);
+        assertEquals(1, result.replies);
+    }
+
+    @Test
+    public void throwingHandlersReplyAnError() {
+        registry.register("failing", NativeHandler.Policy.CALLER, (methodCall, result) -> {
+            throw new IllegalStateException("failed");
+        });
+
+        RecordingResult result = new RecordingResult();
+        assertTrue(registry.dispatch(new MethodCall("failing", null), result));
+        assertEquals(NativeHandlerRegistry.EXCEPTION_ERROR_CODE, result.errorCode);
+        assertEquals(1, result.replies);
+    }
+
+    @Test
+    public void handlersCanBeReplacedAndUnregistered() {
+        registry.register("method", NativeHandler.Policy.CALLER, (methodCall, result) -> result.success(1));
+        registry.register("method", NativeHandler.Policy.CALLER, (methodCall, result) -> result.success(2));
+
+        RecordingResult result = new RecordingResult();
+        assertTrue(registry.dispatch(new MethodCall("method", null), result));
+        assertEquals(2, result.value);
+
+        registry.unregister("method");
+        assertFalse(registry.isRegistered("method"));
+        assertFalse(registry.dispatch(new MethodCall("method", null), new RecordingResult()));
+    }
+
+    private static class RecordingResult implements MethodChannel.Result {
+        int replies;
+        Object value;
+        String errorCode;
+
+        @Override
+        public void success(Object result) {
+            replies++;
+            value = result;
+        }
+
+        @Override
+        public void error(@NonNull String errorCode, String errorMessage, Object errorDetails) {
+            replies++;
+            this.errorCode = errorCode;
+        }
+
+        @Override
+        public void notImplemented() {
+            replies++;
+        }
+    }
+}
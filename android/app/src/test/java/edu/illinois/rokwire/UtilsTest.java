@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class UtilsTest {
+
+    @Test
+    public void pathsSplitOnDots() {
+        assertArrayEquals(new String[] { "a" }, Utils.Map.compilePath("a"));
+        assertArrayEquals(new String[] { "a", "b", "c" }, Utils.Map.compilePath("a.b.c"));
+        assertArrayEquals(new String[] { "", "a", "" }, Utils.Map.compilePath(".a."));
+        assertNull(Utils.Map.compilePath(""));
+        assertNull(Utils.Map.compilePath(null));
+    }
+
+    @Test
+    public void compiledPathsAreCached() {
+        String[] keys = Utils.Map.compilePath("utilsTest.cached.path");
+        assertSame(keys, Utils.Map.compilePath(String.join(".", "utilsTest", "cached", "path")));
+    }
+
+    @Test
+    public void valuesAreReadAlongThePath() {
+        Map<String, Object> map = map("a", map("b", map("string", "value", "int", 7, "bool", true)));
+        assertEquals("value", Utils.Map.getValueFromPath(map, "a.b.string", null));
+        assertEquals(7, Utils.Map.getValueFromPath(map, "a.b.int", 0));
+        assertTrue(Utils.Map.getValueFromPath(map, "a.b.bool", false));
+        assertArrayEquals(new String[] { "a", "b", "string" }, Utils.Map.compilePath("a.b.string"));
+        assertEquals("value", Utils.Map.getValueFromPath(map, Utils.Map.compilePath("a.b.string"), null));
+    }
+
+    @Test
+    public void missingOrMistypedValuesGiveTheDefault() {
+        Map<String, Object> map = map("a", map("b", "value"));
+        assertEquals("default", Utils.Map.getValueFromPath(map, "a.c", "default"));
+        assertEquals("default", Utils.Map.getValueFromPath(map, "a.b.c", "default"));
+        assertEquals(-1, Utils.Map.getValueFromPath(map, "a.b", -1));
+        assertFalse(Utils.Map.getValueFromPath(map, "a.b", false));
+        assertEquals("default", Utils.Map.getValueFromPath("not a map", "a", "default"));
+        assertEquals("default", Utils.Map.getValueFromPath(map, "", "default"));
+    }
+
+    @Test
+    public void platformMapsResolveToTheAndroidValue() {
+        Map<String, Object> map = map("key", map("android", "android value", "ios", "ios value"));
+        assertEquals("android value", Utils.Map.getValueFromPath(map, "key", null));
+        assertEquals("default", Utils.Map.getValueFromPath(map("key", Collections.emptyMap()), "key", "default"));
+    }
+
+    private static Map<String, Object> map(Object... keysAndValues) {
+        Map<String, Object> map = new HashMap<>();
+        for (int index = 0; index < keysAndValues.length; index += 2) {
+            map.put((String) keysAndValues[index], keysAndValues[index + 1]);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Base64;
+import java.util.zip.Deflater;
+
+/**
+ * Stages of the "barcode" method pipeline for every format zxing can encode, over content lengths and output sizes.
+ * MaxiCode, RSS and UPC/EAN extension are accepted by the channel but zxing has no writer for them.
+ * <p>
+ * The ARGB raster stage reproduces the former int[] Bitmap fill as a baseline for the packed 1 bit raster.
+ * Bitmap.compress and android.util.Base64 are not available on the JVM, java.util.Base64 stands in for the latter.
+ */
+@State(Scope.Thread)
+public class BarcodePipelineBenchmark {
+
+    @Param({ "aztec", "codabar", "code39", "code93", "code128", "dataMatrix", "ean8", "ean13", "itf", "pdf417", "qrCode", "upca", "upce" })
+    public String format;
+
+    @Param({ "short", "long" })
+    public String contentLength;
+
+    @Param({ "300", "1000" })
+    public int size;
+
+    private BarcodeRequest request;
+    private BitMatrix matrix;
+    private byte[] pngBytes;
+
+    private BarcodeRaster raster;
+    private byte[] rasterRow;
+    private BarcodePngEncoder pngEncoder;
+
+    @Setup(Level.Trial)
+    public void setup() throws WriterException {
+        BarcodeFormat barcodeFormat = BarcodeRequest.formatFromString(format);
+        boolean squareFormat = (barcodeFormat == BarcodeFormat.QR_CODE) || (barcodeFormat == BarcodeFormat.AZTEC) || (barcodeFormat == BarcodeFormat.DATA_MATRIX);
+        request = new BarcodeRequest(buildContent(barcodeFormat, "long".equals(contentLength)), barcodeFormat, size, squareFormat ? size : size / 3);
+        pngEncoder = new BarcodePngEncoder(Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY, BarcodePngEncoder.FILTER_NONE);
+        matrix = BarcodeWriters.getWriter(barcodeFormat).encode(request.content, request.format, request.width, request.height, request.hints);
+        pngBytes = pngEncoder.encode(matrix);
+        raster = new BarcodeRaster();
+        rasterRow = new byte[BarcodeRaster.getRowStride(matrix.getWidth())];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pngEncoder.release();
+    }
+
+    @Benchmark
+    public BitMatrix encode() throws WriterException {
+        return BarcodeWriters.getWriter(request.format).encode(request.content, request.format, request.width, request.height, request.hints);
+    }
+
+    @Benchmark
+    public int[] rasterArgb() {
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                pixels[offset + x] = matrix.get(x, y) ? 0xFF000000 : 0xFFFFFFFF;
+            }
+        }
+        return pixels;
+    }
+
+    @Benchmark
+    public byte[] rasterPacked() {
+        int height = matrix.getHeight();
+        for (int y = 0; y < height; y++) {
+            raster.packRow(matrix, y, rasterRow, 1);
+        }
+        return rasterRow;
+    }
+
+    @Benchmark
+    public byte[] png() {
+        return pngEncoder.encode(matrix);
+    }
+
+    @Benchmark
+    public String base64() {
+        return Base64.getEncoder().encodeToString(pngBytes);
+    }
+
+    @Benchmark
+    public byte[] pipeline() throws WriterException {
+        return BarcodeEncoder.encodePng(request);
+    }
+
+    private static String buildContent(BarcodeFormat format, boolean longContent) {
+        switch (format) {
+            case EAN_8:
+                return "96385074";
+            case EAN_13:
+                return "4006381333931";
+            case UPC_A:
+                return "12345678901";
+            case UPC_E:
+                return "01234565";
+            case ITF:
+                return longContent ? "12345678901234567890123456789012" : "1234567890";
+            case CODABAR:
+                return longContent ? "A12345678901234567890123456789B" : "A1234567B";
+            case CODE_39:
+            case CODE_93:
+            case CODE_128:
+                return longContent ? "RW1234567890ABCDEFGHIJKLMNOPQRSTUV" : "RW123456";
+            default:
+                return longContent ? "https://rokwire.illinois.edu/checkin?event=0123456789abcdef0123456789abcdef&user=0123456789" : "1234567890";
+        }
+    }
+}
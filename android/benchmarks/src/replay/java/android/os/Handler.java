@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.os;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Host JVM stand-in for the Android class, only what the replayed app sources use.
+ */
+public class Handler {
+
+    private final Looper looper;
+    private final Map<Runnable, List<Message>> messages = new HashMap<>();
+
+    public Handler(Looper looper) {
+        this.looper = looper;
+    }
+
+    public final boolean post(Runnable runnable) {
+        return postDelayed(runnable, 0);
+    }
+
+    public final boolean postDelayed(Runnable runnable, long delayMillis) {
+        synchronized (messages) {
+            Message message = new Message(runnable);
+            message.future = looper.schedule(message, delayMillis);
+            if (message.future == null) {
+                return false;
+            }
+            List<Message> runnableMessages = messages.get(runnable);
+            if (runnableMessages == null) {
+                runnableMessages = new ArrayList<>(1);
+                messages.put(runnable, runnableMessages);
+            }
+            runnableMessages.add(message);
+            return true;
+        }
+    }
+
+    public final void removeCallbacks(Runnable runnable) {
+        synchronized (messages) {
+            List<Message> runnableMessages = messages.remove(runnable);
+            if (runnableMessages != null) {
+                for (Message message : runnableMessages) {
+                    message.future.cancel(false);
+                }
+            }
+        }
+    }
+
+    private class Message implements Runnable {
+        final Runnable callback;
+        ScheduledFuture<?> future;
+
+        Message(Runnable callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            synchronized (messages) {
+                List<Message> runnableMessages = messages.get(callback);
+                if ((runnableMessages != null) && runnableMessages.remove(this) && runnableMessages.isEmpty()) {
+                    messages.remove(callback);
+                }
+            }
+            callback.run();
+        }
+
+        @Override
+        public String toString() {
+            return "Handler (" + Handler.this.getClass().getName() + ") {" + callback + "}";
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.os;
+
+import android.util.Printer;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Host JVM stand-in for the Android class: the main looper is a single daemon thread named "main" running posted
+ * messages in time order. Other threads have no looper.
+ */
+public final class Looper {
+
+    private static final Looper mainLooper = new Looper("main");
+
+    private final ScheduledThreadPoolExecutor executor;
+    private Thread thread;
+    private volatile Printer printer;
+
+    private Looper(String threadName) {
+        executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        executor.prestartCoreThread();
+    }
+
+    public static Looper getMainLooper() {
+        return mainLooper;
+    }
+
+    public static Looper myLooper() {
+        return (Thread.currentThread() == mainLooper.thread) ? mainLooper : null;
+    }
+
+    public Thread getThread() {
+        return thread;
+    }
+
+    public void setMessageLogging(Printer printer) {
+        this.printer = printer;
+    }
+
+    /**
+     * Runs the messages already due, then stops.
+     */
+    public void quitSafely() {
+        executor.shutdown();
+    }
+
+    ScheduledFuture<?> schedule(Runnable runnable, long delayMillis) {
+        try {
+            return executor.schedule(() -> dispatch(runnable), Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    private void dispatch(Runnable runnable) {
+        Printer messagePrinter = printer;
+        if (messagePrinter != null) {
+            messagePrinter.println(">>>>> Dispatching to " + runnable);
+        }
+        runnable.run();
+        if (messagePrinter != null) {
+            messagePrinter.println("<<<<< Finished to " + runnable);
+        }
+    }
+}
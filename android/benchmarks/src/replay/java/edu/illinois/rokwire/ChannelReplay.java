@@ -0,0 +1,322 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.illinois.rokwire;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * Replays a {@link ChannelRecording} made on a device against the native handlers on the host JVM and reports
+ * throughput and reply latency percentiles per method.
+ * <p>
+ * The registry, the methods and their policies come from {@link AppNativeHandlers}, as in {@link App}. Calls are
+ * dispatched the way {@link App} does: main channel calls on the main looper, background channel calls on a task
+ * queue thread, replies through {@link AsyncResult} back on the main looper. The main looper and the few Android
+ * classes the handlers use are host stand-ins from this source set. "init", "barcode" and "barcodeBatch" run their
+ * real code, {@link ConfigStore} and {@link BarcodeRenderer} with its cache in a temporary directory. Handlers that
+ * need an activity or Bitmap ("decodeBarcodes") are stand-ins that reply right away, so they still load the main
+ * thread with their dispatch.
+ * <p>
+ * Run with: ./gradlew :benchmarks:replay --args="channel_recording.bin [--speed factor] [--repeat count]"
+ * Speed 1 replays at the recorded pace, 10 ten times faster, 0 as fast as possible.
+ */
+public class ChannelReplay implements AppNativeHandlers.Host, AppNativeHandlers.ActivityHost {
+
+    // Same as App.
+    private static final long BARCODE_CACHE_MAX_BYTES = 2 * 1024 * 1024;
+    private static final long BARCODE_CACHE_MAX_DISK_BYTES = 4 * 1024 * 1024;
+
+    private static final long REPLY_TIMEOUT_SECONDS = 60;
+
+    private final Map<String, MethodStats> methods = new TreeMap<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService taskQueueExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "task-queue");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ChannelRecorder channelRecorder = new ChannelRecorder();
+    private final File tempDir;
+    private final BarcodeRenderer barcodeRenderer;
+    private final NativeHandlerRegistry registry;
+
+    private ChannelReplay() throws IOException {
+        tempDir = Files.createTempDirectory("channel-replay").toFile();
+        barcodeRenderer = new BarcodeRenderer(new BarcodeCache(BARCODE_CACHE_MAX_BYTES, new File(tempDir, "barcodes"),
+                BARCODE_CACHE_MAX_DISK_BYTES));
+        registry = AppNativeHandlers.createRegistry();
+        AppNativeHandlers.register(registry, this, true);
+        AppNativeHandlers.registerActivity(registry, this);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String fileName = null;
+        double speed = 1;
+        int repeat = 1;
+        for (int index = 0; index < args.length; index++) {
+            if ("--speed".equals(args[index]) && (index + 1 < args.length)) {
+                speed = Double.parseDouble(args[++index]);
+            } else if ("--repeat".equals(args[index]) && (index + 1 < args.length)) {
+                repeat = Integer.parseInt(args[++index]);
+            } else {
+                fileName = args[index];
+            }
+        }
+        if ((fileName == null) || (speed < 0) || (repeat < 1)) {
+            System.err.println("Usage: ChannelReplay <recording> [--speed factor] [--repeat count]");
+            System.exit(2);
+        }
+
+        List<ChannelRecording.Call> calls;
+        try (ChannelRecording.Reader reader = new ChannelRecording.Reader(new FileInputStream(fileName))) {
+            calls = reader.readAll();
+        }
+        if (calls.isEmpty()) {
+            System.err.println("No calls in " + fileName);
+            System.exit(1);
+        }
+
+        ChannelReplay replay = new ChannelReplay();
+        try {
+            replay.run(calls, speed, repeat);
+        } finally {
+            replay.shutdown();
+        }
+        // The registry pools keep their idle threads alive for a while.
+        System.exit(0);
+    }
+
+    // AppNativeHandlers.Host
+
+    @Override
+    public void setLaunchStatus(String status) {
+    }
+
+    @Override
+    public BarcodeRenderer getBarcodeRenderer() {
+        return barcodeRenderer;
+    }
+
+    @Override
+    public void decodeBarcodes(Object params, @NonNull MethodChannel.Result result) {
+        result.success(null);
+    }
+
+    @Override
+    public ChannelRecorder getChannelRecorder() {
+        return channelRecorder;
+    }
+
+    @Override
+    public File getChannelRecordingFile() {
+        return new File(tempDir, "channel_recording.bin");
+    }
+
+    @Override
+    public String getDeepLinkScheme() {
+        return "edu.illinois.rokwire";
+    }
+
+    // AppNativeHandlers.ActivityHost
+
+    @Override
+    public List<String> handleEnabledOrientations(Object orientations) {
+        return null;
+    }
+
+    @Override
+    public Map<String, Object> handleMetrics(Object params) {
+        return null;
+    }
+
+    private void run(List<ChannelRecording.Call> calls, double speed, int repeat) throws Exception {
+        JankWatchdog.getInstance().install();
+        long recordingDurationUs = calls.get(calls.size() - 1).timeUs;
+        CountDownLatch pendingReplies = new CountDownLatch(calls.size() * repeat);
+        long lagNs = 0;
+
+        long startTime = System.nanoTime();
+        for (int iteration = 0; iteration < repeat; iteration++) {
+            long iterationStartTime = (speed > 0) ? startTime + (long) (iteration * recordingDurationUs * 1000L / speed) : 0;
+            for (ChannelRecording.Call call : calls) {
+                if (speed > 0) {
+                    long dispatchTime = iterationStartTime + (long) (call.timeUs * 1000L / speed);
+                    long waitTime;
+                    while ((waitTime = dispatchTime - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(waitTime);
+                    }
+                    lagNs = Math.max(lagNs, -waitTime);
+                }
+                dispatch(call, pendingReplies);
+            }
+        }
+        long dispatchedTime = System.nanoTime();
+        boolean completed = pendingReplies.await(REPLY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        long endTime = System.nanoTime();
+
+        report(calls.size() * repeat, endTime - startTime, dispatchedTime - startTime, lagNs, speed, completed ? 0 : pendingReplies.getCount());
+        reportMainThread();
+    }
+
+    private void dispatch(ChannelRecording.Call call, CountDownLatch pendingReplies) {
+        MethodStats stats = getMethodStats(call.method);
+        stats.calls.incrementAndGet();
+        MethodCall methodCall = new MethodCall(call.method, call.arguments);
+        long callTime = System.nanoTime();
+        if (call.channel == ChannelRecording.CHANNEL_BACKGROUND) {
+            taskQueueExecutor.execute(() -> dispatch(methodCall, new ReplayResult(stats, callTime, pendingReplies)));
+        } else {
+            mainHandler.post(() -> {
+                long startTime = JankWatchdog.getInstance().beginOperation();
+                dispatch(methodCall, new ReplayResult(stats, callTime, pendingReplies));
+                JankWatchdog.getInstance().endOperation(JankWatchdog.OPERATION_CHANNEL, methodCall.method, startTime);
+            });
+        }
+    }
+
+    // As App: handlers may reply from any thread, the reply is delivered once on the main looper.
+    private void dispatch(MethodCall methodCall, MethodChannel.Result result) {
+        AsyncResult asyncResult = AsyncResult.of(result, methodCall.method);
+        if (!registry.dispatch(methodCall, asyncResult)) {
+            asyncResult.notImplemented();
+        }
+    }
+
+    private void report(int callsCount, long totalNs, long dispatchNs, long lagNs, double speed, long unanswered) {
+        System.out.printf("Replayed %d calls at %s in %.1f ms (dispatch %.1f ms, max dispatch lag %.1f ms), %.1f calls/s%n",
+                callsCount, (speed > 0) ? ("speed " + speed) : "full speed", totalNs / 1e6, dispatchNs / 1e6, lagNs / 1e6,
+                callsCount * 1e9 / totalNs);
+        if (unanswered > 0) {
+            System.out.printf("%d calls not answered within %d s%n", unanswered, REPLY_TIMEOUT_SECONDS);
+        }
+        System.out.printf("%-24s %8s %8s %8s %8s %10s %10s %10s %10s %10s%n",
+                "method", "calls", "success", "error", "notImpl", "mean us", "p50 us", "p90 us", "p99 us", "max us");
+        for (Map.Entry<String, MethodStats> entry : methods.entrySet()) {
+            MethodStats stats = entry.getValue();
+            LatencyHistogram latency = stats.latency;
+            System.out.printf("%-24s %8d %8d %8d %8d %10d %10d %10d %10d %10d%n", entry.getKey(), stats.calls.get(),
+                    stats.successes.get(), stats.errors.get(), stats.notImplemented.get(), latency.getMean(),
+                    latency.getPercentile(50), latency.getPercentile(90), latency.getPercentile(99), latency.getMax());
+        }
+    }
+
+    private void reportMainThread() throws Exception {
+        FutureTask<Map<String, Object>> report = new FutureTask<>(() -> JankWatchdog.getInstance().getReport(false));
+        mainHandler.post(report);
+        Map<String, Object> mainThreadReport = report.get();
+        System.out.printf("Main thread: %s messages, %s over the %s us frame budget%n", mainThreadReport.get("messages"),
+                mainThreadReport.get("stalls"), mainThreadReport.get("frameBudgetUs"));
+    }
+
+    private void shutdown() {
+        channelRecorder.stop();
+        taskQueueExecutor.shutdownNow();
+        Looper.getMainLooper().quitSafely();
+        deleteRecursively(tempDir);
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    // Only called from the driver thread.
+    private MethodStats getMethodStats(String method) {
+        MethodStats stats = methods.get(method);
+        if (stats == null) {
+            stats = new MethodStats();
+            methods.put(method, stats);
+        }
+        return stats;
+    }
+
+    private static class MethodStats {
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong successes = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong notImplemented = new AtomicLong();
+        final LatencyHistogram latency = new LatencyHistogram();
+    }
+
+    /**
+     * Stand-in for the engine reply, called on the main looper: records the latency of the first reply, later ones are
+     * ignored.
+     */
+    private static class ReplayResult implements MethodChannel.Result {
+        private final MethodStats stats;
+        private final long callTime;
+        private final CountDownLatch pendingReplies;
+        private boolean replied;
+
+        ReplayResult(MethodStats stats, long callTime, CountDownLatch pendingReplies) {
+            this.stats = stats;
+            this.callTime = callTime;
+            this.pendingReplies = pendingReplies;
+        }
+
+        @Override
+        public void success(Object result) {
+            reply(stats.successes);
+        }
+
+        @Override
+        public void error(String errorCode, String errorMessage, Object errorDetails) {
+            reply(stats.errors);
+        }
+
+        @Override
+        public void notImplemented() {
+            reply(stats.notImplemented);
+        }
+
+        private synchronized void reply(AtomicLong counter) {
+            if (!replied) {
+                replied = true;
+                stats.latency.record((System.nanoTime() - callTime) / 1000L);
+                counter.incrementAndGet();
+                pendingReplies.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import 'dart:typed_data';
+import 'dart:ui';
+
+///////////////////////////
+// BarcodeModules
+
+// Module grid of a barcode, independent of the size it gets painted at.
+// Runs are grouped by identical consecutive rows: [rowsCount, runsCount, start0, length0, start1, length1, ...]
+class BarcodeModules {
+  final int width;
+  final int height;
+  final Int32List runs;
+
+  BarcodeModules({required this.width, required this.height, required this.runs});
+
+  static BarcodeModules? fromNative(dynamic data) {
+    if (data is Map) {
+      dynamic width = data['width'];
+      dynamic height = data['height'];
+      dynamic runs = data['runs'];
+      if ((width is int) && (height is int) && (runs is Int32List)) {
+        return BarcodeModules(width: width, height: height, runs: runs);
+      }
+    }
+    return null;
+  }
+
+  // Path of the black modules scaled to fill the given size.
+  Path buildPath(Size size) {
+    Path path = Path();
+    if ((0 < width) && (0 < height)) {
+      double moduleWidth = size.width / width;
+      double moduleHeight = size.height / height;
+      int y = 0, index = 0;
+      while (index + 1 < runs.length) {
+        int rowsCount = runs[index++];
+        int runsCount = runs[index++];
+        for (int run = 0; (run < runsCount) && (index + 1 < runs.length); run++) {
+          int start = runs[index++];
+          int length = runs[index++];
+          path.addRect(Rect.fromLTWH(start * moduleWidth, y * moduleHeight, length * moduleWidth, rowsCount * moduleHeight));
+        }
+        y += rowsCount;
+      }
+    }
+    return path;
+  }
+}
@@ -15,14 +15,23 @@
  */
 
 import 'dart:convert';
+import 'dart:io';
 
+import 'package:flutter/foundation.dart';
 import 'package:flutter/services.dart';
+import 'package:illinois/model/Barcode.dart';
 import 'package:illinois/service/Config.dart';
+import 'package:rokwire_plugin/service/notification_service.dart';
 import 'package:rokwire_plugin/service/service.dart';
+import 'package:rokwire_plugin/utils/utils.dart';
 
-class NativeCommunicator with Service {
+class NativeCommunicator with Service, NotificationsListener {
   
   final MethodChannel _platformChannel = const MethodChannel('edu.illinois.rokwire/native_call');
+  // Handled off the main thread on Android, used for barcode rendering.
+  final MethodChannel _backgroundChannel = const MethodChannel('edu.illinois.rokwire/native_call_background');
+  bool _backgroundChannelAvailable = true;
+  final BasicMessageChannel<Object?> _launchStatusChannel = const BasicMessageChannel<Object?>('edu.illinois.rokwire/launch_status', StandardMessageCodec());
 
   // Singletone
   static final NativeCommunicator _communicator = new NativeCommunicator._internal();
@@ -33,11 +42,20 @@ class NativeCommunicator with Service {
 
   NativeCommunicator._internal();
 
+  // Config sent in full by the first sync, until its hashes reach native side with the first re-sync.
+  Map<String, dynamic>? _nativeConfig;
+  // Config hashes held by native side, null until the first successful re-sync.
+  String? _nativeConfigHash;
+  Map<String, String>? _nativeConfigHashes;
+
   // Initialization
 
   @override
   void createService() {
     _platformChannel.setMethodCallHandler(_handleMethodCall);
+    NotificationService().subscribe(this, [
+      Config.notifyConfigChanged,
+    ]);
   }
 
   @override
@@ -48,6 +66,7 @@ class NativeCommunicator with Service {
 
   @override
   void destroyService() {
+    NotificationService().unsubscribe(this);
   }
 
   @override
@@ -57,15 +76,88 @@ class NativeCommunicator with Service {
 
   // NotificationsListener
 
+  @override
+  void onNotification(String name, dynamic param) {
+    if ((name == Config.notifyConfigChanged) && Platform.isAndroid) {
+      _nativeInit();
+    }
+  }
+
+  // Config sync: the first call sends the full config, without hashing anything on the startup path.
+  // Re-syncs on Android send the hashes of the top-level entries and only the entries whose hash changed, plus the
+  // hashes of the config sent in full the first time, as native side has none for it. iOS always receives the full config.
 
   Future<void> _nativeInit() async {
     try {
-      await _platformChannel.invokeMethod('init', { "config": Config().content });
+      Map<String, dynamic> content = Config().content;
+      if (!Platform.isAndroid || ((_nativeConfig == null) && (_nativeConfigHashes == null))) {
+        await _platformChannel.invokeMethod('init', { "config": content });
+        // Shallow copy, cheap and safe against the config content being updated in place.
+        _nativeConfig = Platform.isAndroid ? Map<String, dynamic>.from(content) : null;
+        return;
+      }
+
+      // Encoding and hashing every entry of a large config takes a while, it runs off the UI isolate.
+      List<Map<String, String>?> contentHashes = await compute(_buildConfigHashesList, <Map<String, dynamic>?>[
+        content, (_nativeConfigHashes == null) ? _nativeConfig : null
+      ]);
+      Map<String, String> hashes = contentHashes[0]!;
+      String hash = _buildConfigHash(hashes);
+      if (hash != _nativeConfigHash) {
+        Map<String, String>? baseHashes = contentHashes[1];
+        Map<String, String> nativeHashes = _nativeConfigHashes ?? baseHashes!;
+        Map<String, dynamic> delta = _buildConfigDelta(content, hashes, hashes.keys.where((String key) => nativeHashes[key] != hashes[key]));
+        dynamic reply = await _platformChannel.invokeMethod('init', { "hash": hash, "hashes": hashes, "delta": delta, "baseHashes": baseHashes });
+        List<dynamic>? staleKeys = JsonUtils.listValue((reply is Map) ? reply['stale'] : null);
+        if ((staleKeys != null) && staleKeys.isNotEmpty) {
+          reply = await _platformChannel.invokeMethod('init', { "hash": hash, "hashes": hashes, "delta": _buildConfigDelta(content, hashes, staleKeys.whereType<String>()) });
+        }
+        _nativeConfigHash = (reply is Map) ? JsonUtils.stringValue(reply['hash']) : null;
+        _nativeConfigHashes = (_nativeConfigHash == hash) ? hashes : null;
+        if (_nativeConfigHashes != null) {
+          _nativeConfig = null;
+        }
+      }
     } on PlatformException catch (e) {
       print(e.message);
     }
   }
 
+  static List<Map<String, String>?> _buildConfigHashesList(List<Map<String, dynamic>?> contents) =>
+    contents.map((Map<String, dynamic>? content) => (content != null) ? _buildConfigHashes(content) : null).toList();
+
+  static Map<String, String> _buildConfigHashes(Map<String, dynamic> content) {
+    Map<String, String> hashes = <String, String>{};
+    content.forEach((String key, dynamic value) {
+      hashes[key] = _buildContentHash(jsonEncode(value));
+    });
+    return hashes;
+  }
+
+  static String _buildConfigHash(Map<String, String> hashes) {
+    List<String> keys = List<String>.from(hashes.keys)..sort();
+    return _buildContentHash(keys.map((String key) => '$key:${hashes[key]}').join(','));
+  }
+
+  static Map<String, dynamic> _buildConfigDelta(Map<String, dynamic> content, Map<String, String> hashes, Iterable<String> keys) {
+    Map<String, dynamic> delta = <String, dynamic>{};
+    for (String key in keys) {
+      if (hashes.containsKey(key)) {
+        delta[key] = content[key];
+      }
+    }
+    return delta;
+  }
+
+  // FNV-1a, prefixed with the length to make collisions between different content even less likely.
+  static String _buildContentHash(String value) {
+    int hash = 0x811c9dc5;
+    for (int codeUnit in value.codeUnits) {
+      hash = ((hash ^ codeUnit) * 0x01000193) & 0xFFFFFFFF;
+    }
+    return '${value.length}:${hash.toRadixString(16)}';
+  }
+
   Future<void> dismissLaunchScreen() async {
     try {
       await _platformChannel.invokeMethod('dismissLaunchScreen');
@@ -74,7 +166,15 @@ class NativeCommunicator with Service {
     }
   }
 
+  // Android takes status updates as fire and forget messages, they are not awaited and no reply round trip is involved.
   Future<void> setLaunchScreenStatus(String? status) async {
+    if (Platform.isAndroid) {
+      _launchStatusChannel.send(status).catchError((e) {
+        print(e.toString());
+        return null;
+      });
+      return;
+    }
     try {
       await _platformChannel.invokeMethod('setLaunchScreenStatus', {
         'status': status
@@ -96,16 +196,43 @@ class NativeCommunicator with Service {
     return result;
   }
 
-  Future<Uint8List?> getBarcodeImageData(String content, { required String format, required int width, required int height }) async {
+  // Optional hints: 'errorCorrection', 'margin', 'charset', 'qrVersion'.
+  Future<Uint8List?> getBarcodeImageData(String content, { required String format, required int width, required int height, Map<String, dynamic>? hints }) async {
     Uint8List? result;
     try {
-      String? base64String = await _platformChannel.invokeMethod('barcode', <String, dynamic>{
+      dynamic imageData = await _invokeBackgroundMethod('barcode', <String, dynamic>{
         'content': content,
         'format': format,
         'width': width,
         'height': height,
+        'hints': hints,
+        'binary': true,
       });
-      result = (base64String != null) ? base64Decode(base64String) : null;
+      // Native implementations that do not support the binary mode still return Base64 string.
+      if (imageData is Uint8List) {
+        result = imageData;
+      }
+      else if (imageData is String) {
+        result = base64Decode(imageData);
+      }
+    }
+    catch (e) {
+      print(e.toString());
+    }
+    return result;
+  }
+
+  // Module grid of the barcode, can be painted at any size with BarcodeModulesPainter.
+  Future<BarcodeModules?> getBarcodeModules(String content, { required String format, Map<String, dynamic>? hints }) async {
+    BarcodeModules? result;
+    try {
+      dynamic modulesData = await _invokeBackgroundMethod('barcode', <String, dynamic>{
+        'content': content,
+        'format': format,
+        'hints': hints,
+        'output': 'modules',
+      });
+      result = BarcodeModules.fromNative(modulesData);
     }
     catch (e) {
       print(e.toString());
@@ -124,6 +251,60 @@ class NativeCommunicator with Service {
     return result;
   }
 
+  // Native channel metrics: per method calls, latency and payload sizes, barcode cache and startup timings.
+  // dump: 'log' or 'file', reset clears the method metrics after reading them.
+  Future<Map<String, dynamic>?> getMetrics({String? dump, bool reset = false}) async {
+    Map<String, dynamic>? result;
+    try {
+      dynamic metrics = await _platformChannel.invokeMethod('metrics', <String, dynamic>{
+        'dump': dump,
+        'reset': reset,
+      });
+      result = JsonUtils.mapValue(metrics);
+    }
+    catch (e) {
+      print(e.toString());
+    }
+    return result;
+  }
+
+  // Main thread stalls longer than a frame, attributed to the native operation that ran: 'channel:<method>',
+  // 'reply:<method>', 'orientation', 'launchStatus' or 'other'. Holds per operation totals and the latest 'reports',
+  // most recent first, each with its duration, main looper message and a stack sample when one was captured.
+  // reset clears the stalls after reading them. Stalls are only measured in debug builds, or once enabled is true;
+  // enabled false stops measuring. 'enabled' in the result tells whether stalls are being measured.
+  Future<Map<String, dynamic>?> getJankReports({bool reset = false, bool? enabled}) async {
+    Map<String, dynamic>? result;
+    try {
+      dynamic reports = await _platformChannel.invokeMethod('jankReports', <String, dynamic>{
+        'reset': reset,
+        if (enabled != null) 'enabled': enabled,
+      });
+      result = JsonUtils.mapValue(reports);
+    }
+    catch (e) {
+      print(e.toString());
+    }
+    return result;
+  }
+
+  // Records the native channel calls to a file on the device, to be replayed by the Android benchmarks replay task.
+  // enabled: true starts a new recording, false stops it, null only reads the status.
+  // The status holds 'recording', plus 'file', 'calls' and 'dropped' of the current or just stopped recording.
+  Future<Map<String, dynamic>?> setChannelRecording(bool? enabled) async {
+    Map<String, dynamic>? result;
+    try {
+      dynamic status = await _platformChannel.invokeMethod('channelRecording', <String, dynamic>{
+        'action': (enabled != null) ? (enabled ? 'start' : 'stop') : null,
+      });
+      result = JsonUtils.mapValue(status);
+    }
+    catch (e) {
+      print(e.toString());
+    }
+    return result;
+  }
+
   Future<void> launchTest() async {
     try {
       await _platformChannel.invokeMethod('test');
@@ -132,6 +313,19 @@ class NativeCommunicator with Service {
     }
   }
 
+  // Falls back to the main channel on platforms that do not provide the background one.
+  Future<dynamic> _invokeBackgroundMethod(String method, [dynamic arguments]) async {
+    if (_backgroundChannelAvailable) {
+      try {
+        return await _backgroundChannel.invokeMethod(method, arguments);
+      }
+      on MissingPluginException catch (_) {
+        _backgroundChannelAvailable = false;
+      }
+    }
+    return await _platformChannel.invokeMethod(method, arguments);
+  }
+
   Future<dynamic> _handleMethodCall(MethodCall call) async {
     switch (call.method) {
       case "firebase_message":
@@ -23,6 +23,7 @@ import 'package:illinois/model/Explore.dart';
 import 'package:illinois/service/AppReview.dart';
 import 'package:illinois/service/Canvas.dart';
 import 'package:illinois/service/CustomCourses.dart';
+import 'package:illinois/service/NativeCommunicator.dart';
 import 'package:illinois/ui/debug/DebugGuideBrowsePanel.dart';
 import 'package:illinois/ui/debug/DebugRewardsPanel.dart';
 import 'package:illinois/ui/debug/DebugStudentCoursesPanel.dart';
@@ -70,6 +71,7 @@ class _DebugHomePanelState extends State<DebugHomePanel> with NotificationsListe
   rokwire.ConfigEnvironment? _selectedEnv;
   Set<String> _rangingRegionIds = Set();
   bool _preparingRatingApp = false;
+  bool _channelRecording = false;
 
   List<Survey>? _userSurveys;
 
@@ -98,6 +100,11 @@ class _DebugHomePanelState extends State<DebugHomePanel> with NotificationsListe
 
     _updateRangingRegions();
     _loadUserSurveys();
+    NativeCommunicator().setChannelRecording(null).then((Map<String, dynamic>? status) {
+      setStateIfMounted(() {
+        _channelRecording = (status?['recording'] == true);
+      });
+    });
     super.initState();
   }
 
@@ -259,6 +266,12 @@ class _DebugHomePanelState extends State<DebugHomePanel> with NotificationsListe
       Container(height: 1, color: Styles().colors.surfaceAccent ,),
       RibbonButton(title: 'ILLordle', onTap: _onTapWordle),
       Container(height: 1, color: Styles().colors.surfaceAccent ,),
+      RibbonButton(title: 'Native Channel Metrics', onTap: _onTapNativeChannelMetrics),
+      Container(height: 1, color: Styles().colors.surfaceAccent ,),
+      RibbonButton(title: 'Main Thread Stalls', onTap: _onTapMainThreadStalls),
+      Container(height: 1, color: Styles().colors.surfaceAccent ,),
+      ToggleRibbonButton(title: 'Record Native Channel', toggled: _channelRecording, onTap: _onChannelRecording),
+      Container(height: 1, color: Styles().colors.surfaceAccent ,),
 
       Padding(padding: EdgeInsets.symmetric(horizontal: 16, vertical: 16), child:
         _buildFontAwesomeInfo(),
@@ -796,6 +809,48 @@ class _DebugHomePanelState extends State<DebugHomePanel> with NotificationsListe
   void _onTapWordle() =>
     Navigator.push(context, CupertinoPageRoute(builder: (context) => DebugWordlePanel()));
 
+  void _onTapNativeChannelMetrics() {
+    NativeCommunicator().getMetrics(dump: 'log').then((Map<String, dynamic>? metrics) {
+      if (mounted) {
+        if (metrics != null) {
+          showDialog(context: context, builder: (_) => _buildTextContentInfoDialog(JsonUtils.encode(metrics, prettify: true)));
+        }
+        else {
+          AppAlert.showDialogResult(context, 'Failed to retrieve native channel metrics.');
+        }
+      }
+    });
+  }
+
+  // Release builds only measure stalls once enabled, opening the report enables them for the next ones.
+  void _onTapMainThreadStalls() {
+    NativeCommunicator().getJankReports(enabled: true).then((Map<String, dynamic>? reports) {
+      if (mounted) {
+        if (reports != null) {
+          showDialog(context: context, builder: (_) => _buildTextContentInfoDialog(JsonUtils.encode(reports, prettify: true)));
+        }
+        else {
+          AppAlert.showDialogResult(context, 'Failed to retrieve main thread stalls.');
+        }
+      }
+    });
+  }
+
+  // The recording file is pulled from the device and replayed by the Android benchmarks replay task.
+  void _onChannelRecording() {
+    NativeCommunicator().setChannelRecording(!_channelRecording).then((Map<String, dynamic>? status) {
+      if (mounted) {
+        bool recording = (status?['recording'] == true);
+        setState(() {
+          _channelRecording = recording;
+        });
+        if ((status != null) && !recording) {
+          showDialog(context: context, builder: (_) => _buildTextContentInfoDialog(JsonUtils.encode(status, prettify: true)));
+        }
+      }
+    });
+  }
+
   String get _refreshTokenTitle {
     Auth2Token? token = Auth2().token;
     if (token == Auth2().userToken) {
@@ -3,6 +3,7 @@ import 'dart:typed_data';
 
 import 'package:flutter/gestures.dart';
 import 'package:flutter/material.dart';
+import 'package:illinois/model/Barcode.dart';
 import 'package:illinois/service/AppDateTime.dart';
 import 'package:illinois/service/Config.dart';
 import 'package:illinois/utils/AppUtils.dart';
@@ -10,6 +11,7 @@ import 'package:illinois/service/Auth2.dart';
 import 'package:illinois/service/DeepLink.dart';
 import 'package:illinois/service/NativeCommunicator.dart';
 import 'package:illinois/ui/wallet/WalletPhotoWrapper.dart';
+import 'package:illinois/ui/widgets/BarcodeModulesPainter.dart';
 import 'package:rokwire_plugin/service/localization.dart';
 import 'package:rokwire_plugin/service/notification_service.dart';
 import 'package:rokwire_plugin/service/styles.dart';
@@ -25,6 +27,7 @@ class WalletLibraryCardPage extends StatefulWidget {
 
 class _WalletLibraryCardPageState extends State<WalletLibraryCardPage> with NotificationsListener {
 
+  BarcodeModules? _barcodeModules;
   MemoryImage? _barcodeImage;
   String? _barcodeNumber;
   DateTime _accessTime = DateTime.now();
@@ -38,11 +41,7 @@ class _WalletLibraryCardPageState extends State<WalletLibraryCardPage> with Noti
 
     _barcodeNumber = Auth2().iCard?.libraryNumber;
     WidgetsBinding.instance.addPostFrameCallback((_) {
-      _loadBarcodeImage(_barcodeNumber).then((MemoryImage? barcodeImage) {
-        setStateIfMounted(() {
-          _barcodeImage = barcodeImage;
-        });
-      });
+      _loadBarcode(_barcodeNumber);
     });
     _libraryLaunchRecognizer = TapGestureRecognizer()..onTap = _onLaunchLibrary;
     super.initState();
@@ -61,12 +60,7 @@ class _WalletLibraryCardPageState extends State<WalletLibraryCardPage> with Noti
     if ((name == Auth2.notifyCardChanged) && (Auth2().iCard?.libraryNumber != _barcodeNumber) && mounted) {
       String? barcodeNumber = Auth2().iCard?.libraryNumber;
       if (_barcodeNumber != barcodeNumber) {
-        _loadBarcodeImage(barcodeNumber).then((MemoryImage? barcodeImage) {
-          setStateIfMounted(() {
-            _barcodeImage = barcodeImage;
-            _barcodeNumber = barcodeNumber;
-          });
-        });
+        _loadBarcode(barcodeNumber);
       }
     }
   }
@@ -168,7 +162,22 @@ class _WalletLibraryCardPageState extends State<WalletLibraryCardPage> with Noti
       shape: BoxShape.rectangle,
       color: Colors.white,
       image: (_barcodeImage != null) ? DecorationImage(fit: BoxFit.fill, image:_barcodeImage! ,) : null
-    ),);
+    ), child: (_barcodeModules != null) ? CustomPaint(painter: BarcodeModulesPainter(_barcodeModules!)) : null,);
+
+  // The module grid is painted at any layout size, platforms that do not provide it get an image.
+  void _loadBarcode(String? barcodeNumber) {
+    _loadBarcodeModules(barcodeNumber).then((BarcodeModules? barcodeModules) async {
+      MemoryImage? barcodeImage = ((barcodeModules == null) && mounted) ? await _loadBarcodeImage(barcodeNumber) : null;
+      setStateIfMounted(() {
+        _barcodeModules = barcodeModules;
+        _barcodeImage = barcodeImage;
+        _barcodeNumber = barcodeNumber;
+      });
+    });
+  }
+
+  Future<BarcodeModules?> _loadBarcodeModules(String? libraryCode) async =>
+    ((libraryCode != null) && libraryCode.isNotEmpty) ? await NativeCommunicator().getBarcodeModules(libraryCode, format: 'codabar') : null;
 
   Future<MemoryImage?> _loadBarcodeImage(String? libraryCode) async {
     Uint8List? barcodeBytes = ((libraryCode != null) && libraryCode.isNotEmpty) ? await NativeCommunicator().getBarcodeImageData(libraryCode,
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2020 Board of Trustees of the University of Illinois.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import 'package:flutter/material.dart';
+import 'package:illinois/model/Barcode.dart';
+
+class BarcodeModulesPainter extends CustomPainter {
+  final BarcodeModules modules;
+  final Color foregroundColor;
+  final Color backgroundColor;
+
+  BarcodeModulesPainter(this.modules, { this.foregroundColor = Colors.black, this.backgroundColor = Colors.white });
+
+  @override
+  void paint(Canvas canvas, Size size) {
+    canvas.drawRect(Offset.zero & size, Paint()..color = backgroundColor);
+    canvas.drawPath(modules.buildPath(size), Paint()
+      ..color = foregroundColor
+      ..isAntiAlias = false);
+  }
+
+  @override
+  bool shouldRepaint(BarcodeModulesPainter oldDelegate) =>
+    (modules != oldDelegate.modules) || (foregroundColor != oldDelegate.foregroundColor) || (backgroundColor != oldDelegate.backgroundColor);
+}